@@ -0,0 +1,98 @@
+/**
+ * This class represents a self-balancing (AVL) binary search tree.
+ * Insertion and removal are inherited from BinarySearchTree; afterwards the heights of the affected nodes are
+ * updated on the way back to the root and rotations restore the AVL property, so the height of the tree stays O(log n) whatever the order of the input.
+ * Rotations keep the parent links of every BSTNode consistent.
+ *
+ * @author Ivory Huo
+ */
+
+public class AVLTree extends BinarySearchTree {
+
+    /**
+     * The constructor for the class that creates an empty tree
+     */
+    public AVLTree() {
+        super();
+    }
+
+    /**
+     * Walks from the given node up to the root, updating heights and rotating wherever a node is out of balance
+     *
+     * @param node: lowest node whose subtree changed (may be null)
+     */
+    @Override
+    protected void rebalanceFrom(BSTNode node) {
+        while (node != null) {
+            updateHeight(node);
+            int balance = balance(node);
+            if (balance > 1) { // Left side too tall
+                if (balance(node.getLeftChild()) < 0) {
+                    rotateLeft(node.getLeftChild()); // Left-right case
+                }
+                node = rotateRight(node);
+            } else if (balance < -1) { // Right side too tall
+                if (balance(node.getRightChild()) > 0) {
+                    rotateRight(node.getRightChild()); // Right-left case
+                }
+                node = rotateLeft(node);
+            }
+            node = node.getParent();
+        }
+    }
+
+    /**
+     * Rotates the subtree rooted at x to the left; x's right child takes its place
+     *
+     * @param x: root of the subtree to rotate
+     * @return the new root of the subtree
+     */
+    private BSTNode rotateLeft(BSTNode x) {
+        BSTNode y = x.getRightChild();
+        BSTNode parent = x.getParent();
+        x.setRightChild(y.getLeftChild());
+        replaceChild(parent, x, y);
+        y.setLeftChild(x);
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    /**
+     * Rotates the subtree rooted at x to the right; x's left child takes its place
+     *
+     * @param x: root of the subtree to rotate
+     * @return the new root of the subtree
+     */
+    private BSTNode rotateRight(BSTNode x) {
+        BSTNode y = x.getLeftChild();
+        BSTNode parent = x.getParent();
+        x.setLeftChild(y.getRightChild());
+        replaceChild(parent, x, y);
+        y.setRightChild(x);
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    /**
+     * Returns the height of a subtree, 0 for an empty one
+     */
+    private static int height(BSTNode node) {
+        return node == null ? 0 : node.getHeight();
+    }
+
+    /**
+     * Recomputes the height of a node from the heights of its children
+     */
+    private static void updateHeight(BSTNode node) {
+        node.setHeight(1 + Math.max(height(node.getLeftChild()), height(node.getRightChild())));
+    }
+
+    /**
+     * Returns the height of the left subtree minus the height of the right subtree
+     */
+    private static int balance(BSTNode node) {
+        return height(node.getLeftChild()) - height(node.getRightChild());
+    }
+}
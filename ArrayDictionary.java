@@ -0,0 +1,556 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements an ordered dictionary as an AVL tree whose nodes live in parallel arrays.
+ * A node is an index: its children, parent and type are ints in primitive arrays, and its label and data are
+ * entries of two String arrays. There is no per-node object, so the tree costs a few ints and two references
+ * per record and a descent touches only a handful of arrays. Records are created when they are returned.
+ * Each node also keeps the packed prefix of its label (see Key), so a descent decides most comparisons on a long
+ * from a primitive array without reading the label string.
+ * Slots of removed nodes are kept on a free list and reused by later insertions.
+ *
+ * @author Ivory Huo
+ */
+
+public class ArrayDictionary implements BSTDictionaryADT {
+
+    // Index standing for "no node"
+    private static final int NIL = -1;
+
+    // Kinds of packed prefix kept for a node: none, the first eight characters of a longer label, the whole label
+    private static final byte UNPACKED = 0;
+    private static final byte PACKED = 1;
+    private static final byte PACKED_WHOLE = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] left;
+    private int[] right; // Also links the free list
+    private int[] parent;
+    private int[] type;
+    private long[] prefixes;
+    private byte[] packing;
+    private byte[] height;
+    private String[] labels;
+    private String[] data;
+
+    private int root = NIL;
+    private int used; // Slots handed out so far, including freed ones
+    private int free = NIL; // Head of the free list
+    private int size;
+    private int modCount;
+
+    /**
+     * Creates an empty dictionary
+     */
+    public ArrayDictionary() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty dictionary with room for the given number of records before the arrays grow
+     *
+     * @param capacity: initial number of node slots
+     */
+    public ArrayDictionary(int capacity) {
+        capacity = Math.max(1, capacity);
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        type = new int[capacity];
+        prefixes = new long[capacity];
+        packing = new byte[capacity];
+        height = new byte[capacity];
+        labels = new String[capacity];
+        data = new String[capacity];
+    }
+
+    /**
+     * Returns the number of records in the dictionary
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the Record with key k, or null if the Record is not in the dictionary
+     * The descent compares k with the label and type arrays, and only a hit creates a Record, which reuses k,
+     * since it equals the stored key.
+     *
+     * @param k: key of the record to retrieve
+     * @return The Record associated with the key if it exists, otherwise null
+     */
+    @Override
+    public Record get(Key k) {
+        int node = find(k);
+        return node != NIL ? new Record(k, data[node]) : null;
+    }
+
+    /**
+     * Inserts d into the ordered dictionary.
+     *
+     * @param d: record to insert into the dictionary
+     * @throws DictionaryException if a record with the same key already exists in the dictionary
+     */
+    @Override
+    public void put(Record d) throws DictionaryException {
+        Key k = d.getKey();
+        int p = NIL;
+        int current = root;
+        int comparison = 0;
+        while (current != NIL) {
+            comparison = compare(k, current);
+            if (comparison == 0) {
+                throw new DictionaryException("Record with the same Key already exists.", true);
+            }
+            p = current;
+            current = comparison < 0 ? left[current] : right[current];
+        }
+        int node = allocate(k, d.getDataItem());
+        parent[node] = p;
+        if (p == NIL) {
+            root = node;
+        } else if (comparison < 0) {
+            left[p] = node;
+        } else {
+            right[p] = node;
+        }
+        size++;
+        modCount++;
+        rebalanceFrom(p);
+    }
+
+    /**
+     * Removes the Record with Key k from the dictionary.
+     *
+     * @param k: key of the record to remove
+     * @throws DictionaryException if the record is not found in the dictionary
+     */
+    @Override
+    public void remove(Key k) throws DictionaryException {
+        int node = find(k);
+        if (node == NIL) {
+            throw new DictionaryException("Record not in the dictionary.", true);
+        }
+        if (left[node] != NIL && right[node] != NIL) {
+            // Two children: move the smallest record of the right subtree here and unlink its slot instead
+            int smallest = smallest(right[node]);
+            labels[node] = labels[smallest];
+            type[node] = type[smallest];
+            prefixes[node] = prefixes[smallest];
+            packing[node] = packing[smallest];
+            data[node] = data[smallest];
+            node = smallest;
+        }
+        int child = left[node] != NIL ? left[node] : right[node];
+        int p = parent[node];
+        replaceChild(p, node, child);
+        release(node);
+        size--;
+        modCount++;
+        rebalanceFrom(p);
+    }
+
+    /**
+     * Returns the successor of k; the given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to find the successor for
+     * @return The successor record, or null if no successor exists.
+     */
+    @Override
+    public Record successor(Key k) {
+        return higher(k);
+    }
+
+    /**
+     * Returns the predecessor of k; the given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to find the predecessor for
+     * @return The predecessor record, or null if no predecessor exists
+     */
+    @Override
+    public Record predecessor(Key k) {
+        return lower(k);
+    }
+
+    /**
+     * Returns the Record with the largest key smaller than or equal to k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record floor(Key k) {
+        return recordOrNull(descend(k, true, true));
+    }
+
+    /**
+     * Returns the Record with the smallest key larger than or equal to k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record ceiling(Key k) {
+        return recordOrNull(descend(k, false, true));
+    }
+
+    /**
+     * Returns the Record with the largest key strictly smaller than k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record lower(Key k) {
+        return recordOrNull(descend(k, true, false));
+    }
+
+    /**
+     * Returns the Record with the smallest key strictly larger than k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record higher(Key k) {
+        return recordOrNull(descend(k, false, false));
+    }
+
+    /**
+     * Returns the Record with smallest key in the ordered dictionary. Returns null if the dictionary is empty.
+     *
+     * @return The record with the smallest key, or null if the dictionary is empty.
+     */
+    @Override
+    public Record smallest() {
+        return root == NIL ? null : record(smallest(root));
+    }
+
+    /**
+     * Returns the Record with largest key in the ordered dictionary. Returns null if the dictionary is empty
+     *
+     * @return The record with the largest key, or null if the dictionary is empty
+     */
+    @Override
+    public Record largest() {
+        return root == NIL ? null : record(largest(root));
+    }
+
+    /**
+     * Returns a cursor positioned before the smallest record; it steps through the parent indices
+     *
+     * @return a cursor over the records in key order
+     */
+    @Override
+    public DictionaryCursor cursor() {
+        return new ArrayCursor(root == NIL ? NIL : smallest(root));
+    }
+
+    /**
+     * Returns a cursor positioned just before the smallest record whose key is not smaller than from
+     *
+     * @param from: lower bound of the records returned by the cursor
+     * @return a cursor whose next() returns the first record with key >= from
+     */
+    @Override
+    public DictionaryCursor cursor(Key from) {
+        return new ArrayCursor(descend(from, false, true));
+    }
+
+    /**
+     * Compares k with the key stored in the given node, in the order of Key.compareTo
+     */
+    private int compare(Key k, int node) {
+        if (k.isPacked() && packing[node] != UNPACKED) {
+            // The packed prefixes order the labels whenever they differ, as in Key.compareTo
+            if (k.getPrefix() != prefixes[node]) {
+                return Long.compareUnsigned(k.getPrefix(), prefixes[node]) < 0 ? -1 : 1;
+            }
+            if (packing[node] == PACKED_WHOLE && k.getLabel().length() <= 8) {
+                return Integer.compare(k.getType(), type[node]);
+            }
+        }
+        int comparison = k.getLabel().compareTo(labels[node]);
+        return comparison != 0 ? comparison : Integer.compare(k.getType(), type[node]);
+    }
+
+    /**
+     * Returns the node holding key k, or NIL
+     */
+    private int find(Key k) {
+        int current = root;
+        while (current != NIL) {
+            int comparison = compare(k, current);
+            if (comparison == 0) {
+                return current;
+            }
+            current = comparison < 0 ? left[current] : right[current];
+        }
+        return NIL;
+    }
+
+    /**
+     * Single descent for floor (below, inclusive), ceiling (above, inclusive), lower and higher
+     *
+     * @param k: key to search for
+     * @param below: true to look for keys smaller than k, false for keys larger than k
+     * @param inclusive: true if a node holding k itself is an answer
+     * @return The matching node, or NIL
+     */
+    private int descend(Key k, boolean below, boolean inclusive) {
+        int current = root;
+        int candidate = NIL;
+        while (current != NIL) {
+            int comparison = compare(k, current);
+            if (comparison == 0 && inclusive) {
+                return current;
+            }
+            if (below ? comparison > 0 : comparison < 0) {
+                candidate = current;
+                current = below ? right[current] : left[current];
+            } else {
+                current = below ? left[current] : right[current];
+            }
+        }
+        return candidate;
+    }
+
+    private int smallest(int node) {
+        while (left[node] != NIL) {
+            node = left[node];
+        }
+        return node;
+    }
+
+    private int largest(int node) {
+        while (right[node] != NIL) {
+            node = right[node];
+        }
+        return node;
+    }
+
+    /**
+     * Returns the node after the given one in key order, or NIL
+     */
+    private int nextNode(int node) {
+        if (right[node] != NIL) {
+            return smallest(right[node]);
+        }
+        int p = parent[node];
+        while (p != NIL && right[p] == node) {
+            node = p;
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * Returns the node before the given one in key order, or NIL
+     */
+    private int previousNode(int node) {
+        if (left[node] != NIL) {
+            return largest(left[node]);
+        }
+        int p = parent[node];
+        while (p != NIL && left[p] == node) {
+            node = p;
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private Record record(int node) {
+        return new Record(Key.fromLowerCase(labels[node], type[node]), data[node]);
+    }
+
+    private Record recordOrNull(int node) {
+        return node == NIL ? null : record(node);
+    }
+
+    /**
+     * Takes a slot from the free list, or a new one, and stores a leaf holding the given key and data in it
+     */
+    private int allocate(Key k, String d) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = right[node];
+        } else {
+            if (used == labels.length) {
+                grow();
+            }
+            node = used++;
+        }
+        left[node] = NIL;
+        right[node] = NIL;
+        height[node] = 1;
+        labels[node] = k.getLabel();
+        type[node] = k.getType();
+        prefixes[node] = k.getPrefix();
+        packing[node] = !k.isPacked() ? UNPACKED : k.getLabel().length() <= 8 ? PACKED_WHOLE : PACKED;
+        data[node] = d;
+        return node;
+    }
+
+    /**
+     * Puts a slot on the free list and drops its strings
+     */
+    private void release(int node) {
+        labels[node] = null;
+        data[node] = null;
+        right[node] = free;
+        free = node;
+    }
+
+    /**
+     * Doubles the capacity of every array
+     */
+    private void grow() {
+        int capacity = labels.length * 2;
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        type = Arrays.copyOf(type, capacity);
+        prefixes = Arrays.copyOf(prefixes, capacity);
+        packing = Arrays.copyOf(packing, capacity);
+        height = Arrays.copyOf(height, capacity);
+        labels = Arrays.copyOf(labels, capacity);
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    /**
+     * Hangs child where oldChild used to be below p (or at the root if p is NIL)
+     */
+    private void replaceChild(int p, int oldChild, int child) {
+        if (p == NIL) {
+            root = child;
+        } else if (left[p] == oldChild) {
+            left[p] = child;
+        } else {
+            right[p] = child;
+        }
+        if (child != NIL) {
+            parent[child] = p;
+        }
+    }
+
+    /**
+     * Walks from the given node up to the root, updating heights and rotating wherever a node is out of balance
+     */
+    private void rebalanceFrom(int node) {
+        while (node != NIL) {
+            updateHeight(node);
+            int balance = balance(node);
+            if (balance > 1) {
+                if (balance(left[node]) < 0) {
+                    rotateLeft(left[node]);
+                }
+                node = rotateRight(node);
+            } else if (balance < -1) {
+                if (balance(right[node]) > 0) {
+                    rotateRight(right[node]);
+                }
+                node = rotateLeft(node);
+            }
+            node = parent[node];
+        }
+    }
+
+    private int rotateLeft(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        if (left[y] != NIL) {
+            parent[left[y]] = x;
+        }
+        replaceChild(parent[x], x, y);
+        left[y] = x;
+        parent[x] = y;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    private int rotateRight(int x) {
+        int y = left[x];
+        left[x] = right[y];
+        if (right[y] != NIL) {
+            parent[right[y]] = x;
+        }
+        replaceChild(parent[x], x, y);
+        right[y] = x;
+        parent[x] = y;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    private int heightOf(int node) {
+        return node == NIL ? 0 : height[node];
+    }
+
+    private void updateHeight(int node) {
+        height[node] = (byte) (1 + Math.max(heightOf(left[node]), heightOf(right[node])));
+    }
+
+    private int balance(int node) {
+        return heightOf(left[node]) - heightOf(right[node]);
+    }
+
+    /**
+     * Cursor that steps from slot to slot through the parent indices
+     */
+    private class ArrayCursor implements DictionaryCursor {
+
+        private int before;
+        private int after;
+        private int expectedModCount = modCount;
+
+        ArrayCursor(int after) {
+            this.after = after;
+            this.before = after != NIL ? previousNode(after) : (root == NIL ? NIL : largest(root));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return after != NIL;
+        }
+
+        @Override
+        public Record next() {
+            checkForModification();
+            if (after == NIL) {
+                throw new NoSuchElementException();
+            }
+            before = after;
+            after = nextNode(before);
+            return record(before);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return before != NIL;
+        }
+
+        @Override
+        public Record previous() {
+            checkForModification();
+            if (before == NIL) {
+                throw new NoSuchElementException();
+            }
+            after = before;
+            before = previousNode(after);
+            return record(after);
+        }
+
+        private void checkForModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements a cursor over a binary search tree.
+ * It steps from node to node through the parent links, so a full ordered scan costs amortized O(1) per record.
+ * The cursor fails with a ConcurrentModificationException if the tree is modified while it is in use.
+ * 
+ * @author Ivory Huo
+ */
+
+public class BSTCursor implements DictionaryCursor {
+
+    private BinarySearchTree bst;
+    private BSTNode before; // Node just before the cursor, or null
+    private BSTNode after; // Node just after the cursor, or null
+    private int expectedModCount;
+
+    /**
+     * Creates a cursor positioned before the smallest record of the tree
+     * 
+     * @param bst: the tree to traverse
+     */
+    public BSTCursor(BinarySearchTree bst) {
+        this.bst = bst;
+        this.before = null;
+        this.after = bst.smallest(bst.getRoot());
+        this.expectedModCount = bst.getModCount();
+    }
+
+    /**
+     * Creates a cursor positioned just before the given node of the tree
+     * 
+     * @param bst: the tree to traverse
+     * @param after: node whose record the first call to next() returns, or null to position the cursor at the end
+     */
+    public BSTCursor(BinarySearchTree bst, BSTNode after) {
+        this.bst = bst;
+        this.after = after;
+        this.before = after != null ? bst.previousNode(after) : bst.largest(bst.getRoot());
+        this.expectedModCount = bst.getModCount();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return after != null;
+    }
+
+    @Override
+    public Record next() {
+        checkForModification();
+        if (after == null) {
+            throw new NoSuchElementException();
+        }
+        before = after;
+        after = bst.nextNode(before);
+        return before.getRecord();
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return before != null;
+    }
+
+    @Override
+    public Record previous() {
+        checkForModification();
+        if (before == null) {
+            throw new NoSuchElementException();
+        }
+        after = before;
+        before = bst.previousNode(after);
+        return after.getRecord();
+    }
+
+    /**
+     * Throws a ConcurrentModificationException if the tree changed since the cursor was created
+     */
+    private void checkForModification() {
+        if (bst.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+}
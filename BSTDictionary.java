@@ -1,3 +1,9 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
 /**
  * This class implements an ordered dictionary using a binary search tree. 
  * Uses a Record object to store the data contained in each internal node of the tree. 
@@ -10,13 +16,78 @@
 public class BSTDictionary implements BSTDictionaryADT {
 	
     private BinarySearchTree bst;
+    private RecordCache cache; // Cache of frequently requested records, or null if caching is off
+    private BloomFilter filter; // Filter rejecting lookups of missing keys, or null if filtering is off
+    private double filterFalsePositiveRate;
+
+    // Smallest number of keys a Bloom filter is sized for; it is sized for twice the current records when rebuilt
+    private static final int MIN_FILTER_CAPACITY = 1024;
 
     /**
      * Constructor for the BSTDictionary class
      * Initializes a new instance of a binary search tree to store the records.
      */
     public BSTDictionary() {
-        this.bst = new BinarySearchTree(); // Initialize the underlying binary search tree
+        this(false);
+    }
+
+    /**
+     * Constructor for the BSTDictionary class that selects the kind of tree used to store the records.
+     * A balanced dictionary is backed by an AVLTree, whose height stays O(log n) even when the records
+     * are inserted in sorted order; otherwise a plain BinarySearchTree is used.
+     *
+     * @param balanced: true to keep the underlying tree balanced
+     */
+    public BSTDictionary(boolean balanced) {
+        this(balanced, 0);
+    }
+
+    /**
+     * Constructor for the BSTDictionary class that also puts a cache of up to cacheSize records in front of get.
+     * Lookups of frequently requested keys are then answered without descending the tree.
+     *
+     * @param balanced: true to keep the underlying tree balanced
+     * @param cacheSize: maximum number of cached records, or 0 for no cache
+     */
+    public BSTDictionary(boolean balanced, int cacheSize) {
+        this(balanced, cacheSize, 0);
+    }
+
+    /**
+     * Constructor for the BSTDictionary class that also keeps a Bloom filter of the keys, so that most lookups
+     * of keys that are not in the dictionary are answered without descending the tree.
+     * The filter is rebuilt from the records when it outgrows its size or after many removals.
+     *
+     * @param balanced: true to keep the underlying tree balanced
+     * @param cacheSize: maximum number of cached records, or 0 for no cache
+     * @param filterFalsePositiveRate: target false-positive rate of the filter, or 0 for no filter
+     */
+    public BSTDictionary(boolean balanced, int cacheSize, double filterFalsePositiveRate) {
+        this.bst = balanced ? new AVLTree() : new BinarySearchTree(); // Initialize the underlying binary search tree
+        this.cache = cacheSize > 0 ? new RecordCache(cacheSize) : null;
+        this.filterFalsePositiveRate = filterFalsePositiveRate;
+        if (filterFalsePositiveRate > 0) {
+            rebuildFilter(0);
+        }
+    }
+
+    /**
+     * Returns the cache in front of get, which reports its hit and miss counts
+     *
+     * @return the cache, or null if the dictionary has none
+     */
+    public RecordCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the Bloom filter in front of the tree, which reports its expected and observed false-positive rates
+     * The filter is replaced whenever it is rebuilt, and its counts start again from zero.
+     *
+     * @return the filter, or null if the dictionary has none
+     */
+    public BloomFilter getFilter() {
+        return filter;
     }
 
     /**
@@ -27,23 +98,40 @@ public class BSTDictionary implements BSTDictionaryADT {
      */
     @Override
     public Record get(Key k) {
+        if (cache != null) {
+            Record cached = cache.get(k);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (filter != null && !filter.mightContain(k)) {
+            return null; // Definitely not in the dictionary
+        }
         BSTNode node = bst.get(bst.getRoot(), k); // Use BST get method to find the node
-        return node != null ? node.getRecord() : null; // Return the record if node found
+        if (node == null) {
+            if (filter != null) {
+                filter.falsePositive();
+            }
+            return null;
+        }
+        if (cache != null) {
+            cache.put(k, node.getRecord()); // Only records in the dictionary are cached, so an insertion never makes an entry stale
+        }
+        return node.getRecord(); // Return the record if node found
     }
 
     /**
      * Inserts d into the ordered dictionary. It throws a DictionaryException if a Record with the same Key as d is already in the dictionary.
      *
-     * @param dL record to insert into the dictionary
+     * @param d: record to insert into the dictionary
      * @throws DictionaryException if a record with the same key already exists in the dictionary
      */
     @Override
     public void put(Record d) throws DictionaryException {
-        try {
-            bst.insert(bst.getRoot(), d); // Attempt to insert the record
-        } catch (DictionaryException e) { // Throw exception 
-            throw new DictionaryException("Record with the same Key already exists.");
+        if (bst.insertIfAbsent(d) != null) { // Single descent; a duplicate is reported with one stackless exception
+            throw new DictionaryException("Record with the same Key already exists.", true);
         }
+        added(d.getKey());
     }
 
     /**
@@ -54,11 +142,135 @@ public class BSTDictionary implements BSTDictionaryADT {
      */
     @Override
     public void remove(Key k) throws DictionaryException {
-        try {
-            bst.remove(bst.getRoot(), k); // Attempt to remove record
-        } catch (DictionaryException e) { // Throw exception
-            throw new DictionaryException("Record not in the dictionary.");
+        if (!tryRemove(k)) {
+            throw new DictionaryException("Record not in the dictionary.", true);
+        }
+    }
+
+    /**
+     * Inserts d unless a Record with the same Key is already in the dictionary, in a single descent of the tree
+     *
+     * @param d: record to insert into the dictionary
+     * @return The record already stored with the key of d, or null if d was inserted
+     */
+    @Override
+    public Record putIfAbsent(Record d) {
+        BSTNode existing = bst.insertIfAbsent(d);
+        if (existing != null) {
+            return existing.getRecord();
+        }
+        added(d.getKey());
+        return null;
+    }
+
+    /**
+     * Computes new data for the Key k from its current data, in a single descent of the tree
+     *
+     * @param k: key of the record to compute
+     * @param remapping: function from the key and its current data (or null) to the new data (or null to remove)
+     * @return The record now stored with key k, or null if there is none
+     */
+    @Override
+    public Record compute(Key k, BiFunction<Key, String, String> remapping) {
+        invalidate(k);
+        boolean[] existed = new boolean[1];
+        Record result = bst.compute(k, (key, data) -> {
+            existed[0] = data != null;
+            return remapping.apply(key, data);
+        });
+        if (result != null && !existed[0]) {
+            added(k);
+        } else if (result == null && existed[0]) {
+            removed();
+        }
+        return result;
+    }
+
+    /**
+     * Removes the Record with Key k from the dictionary if it is there, without throwing an exception
+     *
+     * @param k: key of the record to remove
+     * @return true if the record was removed, false if it was not in the dictionary
+     */
+    @Override
+    public boolean tryRemove(Key k) {
+        BSTNode node = bst.get(bst.getRoot(), k);
+        if (node == null) {
+            return false;
+        }
+        invalidate(k);
+        bst.removeNode(node);
+        removed();
+        return true;
+    }
+
+    /**
+     * Looks up a batch of keys in one pass over the tree.
+     * The keys are visited in increasing order and each search starts from the node where the previous one ended
+     * (finger search), so keys that are close together in the tree share most of their path.
+     *
+     * @param keys: keys to look up, in any order
+     * @return The record of each key, or null if it is not in the dictionary, at the same index as the key
+     */
+    @Override
+    public Record[] getAll(Key[] keys) {
+        Record[] result = new Record[keys.length];
+        BSTNode finger = null;
+        for (int i : sortedOrder(keys, i -> keys[i])) {
+            finger = bst.search(bst.cover(finger, keys[i]), keys[i]);
+            if (finger != null && keys[i].compareTo(finger.getRecord().getKey()) == 0) {
+                result[i] = finger.getRecord();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Inserts a batch of records in one pass over the tree, using finger search as getAll does.
+     *
+     * @param records: records to insert, in any order
+     * @return true at the index of each record that was inserted, false if its key was already in the dictionary
+     */
+    @Override
+    public boolean[] putAll(Record[] records) {
+        boolean[] result = new boolean[records.length];
+        BSTNode finger = null;
+        for (int i : sortedOrder(records, i -> records[i].getKey())) {
+            Key k = records[i].getKey();
+            int modCount = bst.getModCount();
+            finger = bst.findOrInsert(bst.cover(finger, k), records[i]); // The new node, or the existing one on a duplicate
+            if (bst.getModCount() != modCount) {
+                result[i] = true;
+                added(k);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes a batch of keys in one pass over the tree, using finger search as getAll does.
+     *
+     * @param keys: keys to remove, in any order
+     * @return true at the index of each key whose record was removed, false if it was not in the dictionary
+     */
+    @Override
+    public boolean[] removeAll(Key[] keys) {
+        boolean[] result = new boolean[keys.length];
+        BSTNode finger = null;
+        for (int i : sortedOrder(keys, i -> keys[i])) {
+            BSTNode node = bst.search(bst.cover(finger, keys[i]), keys[i]);
+            if (node == null || keys[i].compareTo(node.getRecord().getKey()) != 0) {
+                finger = node;
+                continue;
+            }
+            // The previous node stays in the tree and holds a smaller key, so it is a valid finger for the next key
+            finger = bst.previousNode(node);
+            invalidate(keys[i]);
+            bst.removeNode(node);
+            removed();
+            result[i] = true;
         }
+        return result;
     }
 
     /**
@@ -87,6 +299,56 @@ public class BSTDictionary implements BSTDictionaryADT {
         return predNode != null ? predNode.getRecord() : null; // Return record if found
     }
 
+    /**
+     * Returns the Record with the largest key smaller than or equal to k, found in a single descent of the tree
+     * The given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to search for
+     * @return The floor record, or null if every key is larger than k
+     */
+    @Override
+    public Record floor(Key k) {
+        BSTNode node = bst.floor(bst.getRoot(), k);
+        return node != null ? node.getRecord() : null;
+    }
+
+    /**
+     * Returns the Record with the smallest key larger than or equal to k, found in a single descent of the tree
+     * The given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to search for
+     * @return The ceiling record, or null if every key is smaller than k
+     */
+    @Override
+    public Record ceiling(Key k) {
+        BSTNode node = bst.ceiling(bst.getRoot(), k);
+        return node != null ? node.getRecord() : null;
+    }
+
+    /**
+     * Returns the Record with the largest key strictly smaller than k, found in a single descent of the tree
+     *
+     * @param k: key to search for
+     * @return The lower record, or null if no key is smaller than k
+     */
+    @Override
+    public Record lower(Key k) {
+        BSTNode node = bst.lower(bst.getRoot(), k);
+        return node != null ? node.getRecord() : null;
+    }
+
+    /**
+     * Returns the Record with the smallest key strictly larger than k, found in a single descent of the tree
+     *
+     * @param k: key to search for
+     * @return The higher record, or null if no key is larger than k
+     */
+    @Override
+    public Record higher(Key k) {
+        BSTNode node = bst.higher(bst.getRoot(), k);
+        return node != null ? node.getRecord() : null;
+    }
+
     /**
      * Returns the Record with smallest key in the ordered dictionary. Returns null if the dictionary is empty.
      *
@@ -109,4 +371,154 @@ public class BSTDictionary implements BSTDictionaryADT {
         return largestNode != null ? largestNode.getRecord() : null; // Return record if found
     }
 
+    /**
+     * Returns a cursor positioned before the smallest record of the ordered dictionary.
+     * The cursor steps through the parent links of the tree, so a full ordered scan costs amortized O(1) per record.
+     *
+     * @return a cursor over the records in key order
+     */
+    @Override
+    public DictionaryCursor cursor() {
+        return new BSTCursor(bst);
+    }
+
+    /**
+     * Returns a cursor positioned just before the smallest record whose key is not smaller than from.
+     * The position is found with a single O(log n) descent on a balanced tree.
+     *
+     * @param from: lower bound of the records returned by the cursor; it does not need to be in the dictionary
+     * @return a cursor whose next() returns the first record with key >= from
+     */
+    @Override
+    public DictionaryCursor cursor(Key from) {
+        return new BSTCursor(bst, bst.ceiling(bst.getRoot(), from));
+    }
+
+    /**
+     * Removes every record from the dictionary
+     */
+    public void clear() {
+        bst.build(new Record[0], 0);
+        if (cache != null) {
+            cache.clear();
+        }
+        if (filter != null) {
+            rebuildFilter(0);
+        }
+    }
+
+    /**
+     * Adds many records at once. The records are sorted first if they are not already in key order,
+     * merged with the records already in the dictionary, and the tree is rebuilt with minimum height.
+     * For input that is already sorted this takes linear time.
+     * Records whose key is already in the dictionary, or repeats an earlier record of the input, are not added;
+     * they are returned instead of aborting the whole load.
+     *
+     * @param records: records to add, in any order
+     * @return The records that were not added because of a duplicate key, in key order
+     */
+    @Override
+    public List<Record> load(Record[] records) {
+        List<Record> duplicates = new ArrayList<>();
+        int count = bst.merge(records, duplicates);
+        if (cache != null) {
+            cache.clear();
+        }
+        if (filter != null) {
+            rebuildFilter(count);
+        }
+        return duplicates;
+    }
+
+    /**
+     * Adds many records at once, as load(Record[]) does
+     *
+     * @param records: stream of records to add, in any order
+     * @return The records that were not added because of a duplicate key
+     */
+    public List<Record> load(Stream<Record> records) {
+        return load(records.toArray(Record[]::new));
+    }
+
+    /**
+     * Drops the cached record with key k, if any, before that record changes
+     */
+    private void invalidate(Key k) {
+        if (cache != null) {
+            cache.invalidate(k);
+        }
+    }
+
+    /**
+     * Adds a key that was just inserted to the filter, if any, rebuilding the filter once it is full
+     */
+    private void added(Key k) {
+        if (filter != null) {
+            filter.add(k);
+            if (filter.needsRebuild()) {
+                rebuildFilter(filter.size());
+            }
+        }
+    }
+
+    /**
+     * Tells the filter, if any, that a key was removed, rebuilding the filter once many keys are gone
+     */
+    private void removed() {
+        if (filter != null) {
+            filter.removed();
+            if (filter.needsRebuild()) {
+                rebuildFilter(filter.size());
+            }
+        }
+    }
+
+    /**
+     * Replaces the filter with one sized for twice the given number of records and fills it from the tree
+     */
+    private void rebuildFilter(int size) {
+        filter = new BloomFilter(Math.max(MIN_FILTER_CAPACITY, 2 * size), filterFalsePositiveRate);
+        for (Record r : this) {
+            filter.add(r.getKey());
+        }
+    }
+
+    /**
+     * Returns the indices of a batch sorted by the key of each item, so that results can be stored at the original index
+     * The indices are merge sorted as ints, without boxing them; a batch already in key order is not sorted.
+     */
+    private static int[] sortedOrder(Object[] items, IntFunction<Key> keyOf) {
+        int n = items.length;
+        int[] order = new int[n];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            sorted &= i == 0 || keyOf.apply(i - 1).compareTo(keyOf.apply(i)) <= 0;
+        }
+        if (sorted) {
+            return order;
+        }
+        int[] buffer = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    // Taking from the left run on ties keeps equal keys in their original order
+                    if (j == hi || (i < mid && keyOf.apply(order[i]).compareTo(keyOf.apply(order[j])) <= 0)) {
+                        buffer[k] = order[i++];
+                    } else {
+                        buffer[k] = order[j++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
 }
@@ -1,4 +1,12 @@
-public interface BSTDictionaryADT {
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+
+public interface BSTDictionaryADT extends Iterable<Record> {
     /* Ordered Dictionary ADT */
 
     /* Returns the Record object with the Key as k, or it returns null if such 
@@ -13,6 +21,126 @@ public interface BSTDictionaryADT {
         DictionaryException if such a Record is not in the dictionary. */
     public void remove (Key k) throws DictionaryException;
 
+    /* Looks up every key of the batch. The result holds, at the same index as each key, its Record
+       or null if that key is not in the dictionary. */
+    public default Record[] getAll (Key[] keys) {
+        Record[] result = new Record[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = get(keys[i]);
+        }
+        return result;
+    }
+
+    /* Returns every Record whose label is the given label, in type order, or an empty array if there is none.
+       Records with the same label are adjacent in key order, so they are found with one descent and a short walk. */
+    public default Record[] getAll (String label) {
+        Key from = new Key(label, Integer.MIN_VALUE); // Smallest key with this label
+        List<Record> records = new ArrayList<>();
+        Iterator<Record> matches = new RangeIterator(cursor(from), r -> r.getKey().getLabel().equals(from.getLabel()));
+        while (matches.hasNext()) {
+            records.add(matches.next());
+        }
+        return records.toArray(new Record[0]);
+    }
+
+    /* Inserts every Record of the batch. The result holds, at the same index as each Record, true if it
+       was inserted or false if a Record with the same Key was already in the dictionary. */
+    public default boolean[] putAll (Record[] records) {
+        boolean[] result = new boolean[records.length];
+        for (int i = 0; i < records.length; i++) {
+            try {
+                put(records[i]);
+                result[i] = true;
+            } catch (DictionaryException e) {
+                result[i] = false;
+            }
+        }
+        return result;
+    }
+
+    /* Adds many records at once and returns the records that were not added because their Key was already in
+       the dictionary or repeats an earlier record of the input. Dictionaries that can build their structure
+       from sorted input in linear time override it. */
+    public default List<Record> load (Record[] records) {
+        List<Record> duplicates = new ArrayList<>();
+        for (Record r : records) {
+            if (putIfAbsent(r) != null) {
+                duplicates.add(r);
+            }
+        }
+        return duplicates;
+    }
+
+    /* Removes every key of the batch. The result holds, at the same index as each key, true if its
+       Record was removed or false if it was not in the dictionary. */
+    public default boolean[] removeAll (Key[] keys) {
+        boolean[] result = new boolean[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            try {
+                remove(keys[i]);
+                result[i] = true;
+            } catch (DictionaryException e) {
+                result[i] = false;
+            }
+        }
+        return result;
+    }
+
+    /* Inserts the Record d unless a Record with the same Key is already in the dictionary. Returns that
+       Record, or null if d was inserted. Unlike put, a duplicate is reported without an exception.
+       The default implementation is not atomic; thread-safe dictionaries override it. */
+    public default Record putIfAbsent (Record d) {
+        Record existing = get(d.getKey());
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            put(d);
+            return null;
+        } catch (DictionaryException e) {
+            return get(d.getKey());
+        }
+    }
+
+    /* Replaces the data of the Record with the same Key as d. Returns true if it was replaced, or false
+       (and adds nothing) if no such Record is in the dictionary. */
+    public default boolean replace (Record d) {
+        return compute(d.getKey(), (k, data) -> data != null ? d.getDataItem() : null) != null;
+    }
+
+    /* Computes new data for the Key k from its current data, which is null if k is not in the dictionary.
+       If the function returns null the Record is removed (or not added); otherwise it is replaced (or added).
+       Returns the Record now stored with Key k, or null if there is none.
+       The default implementation is not atomic; thread-safe dictionaries override it. */
+    public default Record compute (Key k, BiFunction<Key, String, String> remapping) {
+        Record current = get(k);
+        String data = remapping.apply(k, current != null ? current.getDataItem() : null);
+        try {
+            if (current != null) {
+                remove(k);
+            }
+            if (data == null) {
+                return null;
+            }
+            Record updated = new Record(current != null ? current.getKey() : k, data);
+            put(updated);
+            return updated;
+        } catch (DictionaryException e) {
+            throw new ConcurrentModificationException("Dictionary modified during compute");
+        }
+    }
+
+    /* Removes the Record with the same Key attribute as k from the dictionary. Returns true if it was
+       removed, or false if it was not in the dictionary, without an exception. */
+    public default boolean tryRemove (Key k) {
+        try {
+            remove(k);
+            return true;
+        } catch (DictionaryException e) {
+            return false;
+        }
+    }
+
     /* Returns the successor of k (the Record from the ordered dictionary 
        with smallest key larger than k); it returns null if the given key has
        no successor. Note that the given key k DOES NOT need to be in the dictionary. */
@@ -23,6 +151,32 @@ public interface BSTDictionaryADT {
        no predecessor. Note that the given key k DOES NOT need to be in the dictionary.  */
     public Record predecessor (Key k);
 
+    /* Returns the Record with the largest key smaller than or equal to k, or null if there is none.
+       The given key k DOES NOT need to be in the dictionary. */
+    public default Record floor (Key k) {
+        Record r = get(k);
+        return r != null ? r : predecessor(k);
+    }
+
+    /* Returns the Record with the smallest key larger than or equal to k, or null if there is none.
+       The given key k DOES NOT need to be in the dictionary. */
+    public default Record ceiling (Key k) {
+        Record r = get(k);
+        return r != null ? r : successor(k);
+    }
+
+    /* Returns the Record with the largest key strictly smaller than k, or null if there is none.
+       Same as predecessor(k). */
+    public default Record lower (Key k) {
+        return predecessor(k);
+    }
+
+    /* Returns the Record with the smallest key strictly larger than k, or null if there is none.
+       Same as successor(k). */
+    public default Record higher (Key k) {
+        return successor(k);
+    }
+
     /* Returns the Record with smallest key in the ordered dictionary. 
        Returns null if the dictionary is empty.  */
     public Record smallest ();
@@ -30,6 +184,41 @@ public interface BSTDictionaryADT {
     /* Returns the Record with largest key in the ordered dictionary. 
        Returns null if the dictionary is empty.  */
     public Record largest ();
+
+    /* Returns a cursor positioned before the smallest record of the ordered dictionary.
+       The default cursor steps with successor and predecessor. */
+    public default DictionaryCursor cursor () {
+        return new SuccessorCursor(this);
+    }
+
+    /* Returns a cursor positioned just before the smallest record whose key is not smaller than from,
+       so that next() returns that record. The key from DOES NOT need to be in the dictionary. */
+    public default DictionaryCursor cursor (Key from) {
+        return new SuccessorCursor(this, ceiling(from));
+    }
+
+    /* Returns an iterator over the records with keys from fromKey (inclusive) to toKey (exclusive), 
+       in key order. Neither key needs to be in the dictionary. */
+    public default Iterator<Record> range (Key fromKey, Key toKey) {
+        return new RangeIterator(cursor(fromKey), r -> r.getKey().compareTo(toKey) < 0);
+    }
+
+    /* Returns an iterator over the records whose labels start with the given prefix, in key order. */
+    public default Iterator<Record> prefix (String prefix) {
+        Key from = new Key(prefix, Integer.MIN_VALUE); // Smallest key with this label
+        return new RangeIterator(cursor(from), r -> r.getKey().getLabel().startsWith(from.getLabel()));
+    }
+
+    /* Returns an iterator over the records of the ordered dictionary in key order. */
+    public default Iterator<Record> iterator () {
+        return cursor();
+    }
+
+    /* Returns a spliterator over the records of the ordered dictionary in key order. */
+    public default Spliterator<Record> spliterator () {
+        return Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
 }
 		
 
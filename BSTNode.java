@@ -11,6 +11,7 @@ public class BSTNode {
     private BSTNode leftChild;
     private BSTNode rightChild;
     private BSTNode parent;
+    private int height;
 
     /**
      * Constructor of the class
@@ -22,6 +23,7 @@ public class BSTNode {
         this.leftChild = null;
         this.rightChild = null;
         this.parent = null;
+        this.height = 1;
     }
 
     /**
@@ -102,6 +104,24 @@ public class BSTNode {
         this.parent = u;
     }
 
+    /**
+     * Returns the height of the subtree rooted at this node, as maintained by a balanced tree
+     * 
+     * @return the height of this node
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sets the height of the subtree rooted at this node
+     * 
+     * @param h the new height
+     */
+    public void setHeight(int h) {
+        this.height = h;
+    }
+
     /**
      * Returns true if this node is a leaf; false otherwise. A node is a leaf if both of its children are null.
      * 
@@ -0,0 +1,116 @@
+import java.util.Random;
+
+/**
+ * This class measures the batched operations of BSTDictionary (getAll, putAll and removeAll, which visit the keys in
+ * order and start each search from the node where the last one ended) against the same work done one call at a time
+ * (get, putIfAbsent and tryRemove, each descending from the root). The dictionary holds a fixed set of records; each
+ * batch is a random sample of keys, either present, new, or all duplicates of present keys. New keys are removed
+ * again after each batch so every repetition starts from the same tree.
+ *
+ * Usage: java BatchOperationsBenchmark [records] [batchSize]
+ *
+ * @author Ivory Huo
+ */
+
+public class BatchOperationsBenchmark {
+
+    private static final int BATCHES = 200;
+    private static final int REPETITIONS = 5;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+        // Present keys have even numbers and new keys odd ones, so the two interleave in key order
+        Record[] records = new Record[n];
+        for (int i = 0; i < n; i++) {
+            records[i] = new Record(new Key(label(2 * i), 1), "data");
+        }
+        BSTDictionary dictionary = new BSTDictionary(true);
+        dictionary.load(records);
+
+        Random random = new Random(11);
+        Key[][] present = new Key[BATCHES][batchSize];
+        Record[][] fresh = new Record[BATCHES][batchSize];
+        Record[][] duplicates = new Record[BATCHES][batchSize];
+        for (int b = 0; b < BATCHES; b++) {
+            for (int i = 0; i < batchSize; i++) {
+                int j = random.nextInt(n);
+                present[b][i] = records[j].getKey();
+                duplicates[b][i] = new Record(records[j].getKey(), "other");
+                fresh[b][i] = new Record(new Key(label(2 * random.nextInt(n) + 1), 1), "data");
+            }
+        }
+
+        System.out.printf("%d records, batches of %d; ns per key%n", n, batchSize);
+        System.out.printf("%-22s %10s %10s%n", "operation", "one by one", "batched");
+
+        report("get / getAll", best(() -> {
+            for (Key[] batch : present) {
+                for (Key k : batch) {
+                    dictionary.get(k);
+                }
+            }
+        }), best(() -> {
+            for (Key[] batch : present) {
+                dictionary.getAll(batch);
+            }
+        }), batchSize);
+
+        report("put new / putAll", best(() -> {
+            for (Record[] batch : fresh) {
+                for (Record r : batch) {
+                    dictionary.putIfAbsent(r);
+                }
+                removeFresh(dictionary, batch);
+            }
+        }), best(() -> {
+            for (Record[] batch : fresh) {
+                dictionary.putAll(batch);
+                removeFresh(dictionary, batch);
+            }
+        }), batchSize);
+        System.out.println("  (both include removing the new keys one by one after each batch)");
+
+        report("put duplicates / putAll", best(() -> {
+            for (Record[] batch : duplicates) {
+                for (Record r : batch) {
+                    dictionary.putIfAbsent(r);
+                }
+            }
+        }), best(() -> {
+            for (Record[] batch : duplicates) {
+                dictionary.putAll(batch);
+            }
+        }), batchSize);
+    }
+
+    private static void removeFresh(BSTDictionary dictionary, Record[] batch) {
+        for (Record r : batch) {
+            dictionary.tryRemove(r.getKey());
+        }
+    }
+
+    private static String label(int i) {
+        return String.format("w%09d", i);
+    }
+
+    /**
+     * Returns the fastest of the repetitions in nanoseconds, after one warm-up run
+     */
+    private static long best(Runnable run) {
+        run.run();
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < REPETITIONS; r++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void report(String operation, long oneByOne, long batched, int batchSize) {
+        double keys = (double) BATCHES * batchSize;
+        System.out.printf("%-22s %10.1f %10.1f%n", operation, oneByOne / keys, batched / keys);
+    }
+}
@@ -1,3 +1,9 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+
 /**
  * This class represents a binary search tree.
  * 
@@ -9,6 +15,9 @@ public class BinarySearchTree {
     // Root node of binary search tree
     private BSTNode root;
 
+    // Number of structural changes, used by cursors to detect modification during a traversal
+    private int modCount;
+
     /**
      * The constructor for the class that creates a leaf node as the root of the tree
      */
@@ -25,6 +34,45 @@ public class BinarySearchTree {
         return root;
     }
 
+    /**
+     * Returns the number of insertions and removals performed on this tree so far
+     * 
+     * @return the modification count
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Replaces the root node of this binary search tree
+     * 
+     * @param r: the new root node, or null for an empty tree
+     */
+    protected void setRoot(BSTNode r) {
+        this.root = r;
+        if (r != null) {
+            r.setParent(null); // The root has no parent
+        }
+    }
+
+    /**
+     * Hangs newChild in the place oldChild used to occupy below parent, keeping the parent links consistent
+     * If parent is null, oldChild was the root and newChild becomes the new root
+     * 
+     * @param parent: parent of oldChild, or null if oldChild is the root
+     * @param oldChild: the node being replaced
+     * @param newChild: the node taking its place (may be null)
+     */
+    protected void replaceChild(BSTNode parent, BSTNode oldChild, BSTNode newChild) {
+        if (parent == null) {
+            setRoot(newChild);
+        } else if (parent.getLeftChild() == oldChild) {
+            parent.setLeftChild(newChild);
+        } else {
+            parent.setRightChild(newChild);
+        }
+    }
+
     /**
      * Returns the node storing the given key; returns null if the key is not stored in the tree with root r
      * 
@@ -33,17 +81,62 @@ public class BinarySearchTree {
      * @return the node with the specified key, or null if not found
      */
     public BSTNode get(BSTNode r, Key k) {
-        if (r == null) { // If starting node is null (empty)
-            return null; // Key is not present in the tree
+        BSTNode current = r;
+        while (current != null) {
+            int comparison = k.compareTo(current.getRecord().getKey());
+            if (comparison == 0) { // Node with key found 
+                return current; 
+            }
+            current = comparison < 0 ? current.getLeftChild() : current.getRightChild(); // Search left or right subtree
         }
-        int comparison = k.compareTo(r.getRecord().getKey());
-        if (comparison == 0) { // Node with key found 
-            return r; 
-        } else if (comparison < 0) { // Search left subtree
-            return get(r.getLeftChild(), k); 
-        } else { // Search right subtree
-            return get(r.getRightChild(), k); 
+        return null; // Key is not present in the tree
+    }
+
+    /**
+     * Returns the node storing the given key, or, if the key is not stored in the tree with root r,
+     * the last node visited on the way down (the node a new record with that key would be attached to)
+     * Returns null only if r is null
+     * 
+     * @param r: Starting node for the search
+     * @param k: Key of the node to search for
+     * @return the node with the specified key, or the parent of the position where it would be inserted
+     */
+    protected BSTNode search(BSTNode r, Key k) {
+        BSTNode current = r;
+        BSTNode last = null;
+        while (current != null) {
+            int comparison = k.compareTo(current.getRecord().getKey());
+            if (comparison == 0) {
+                return current;
+            }
+            last = current;
+            current = comparison < 0 ? current.getLeftChild() : current.getRightChild();
         }
+        return last;
+    }
+
+    /**
+     * Returns the lowest ancestor of finger (or finger itself) whose subtree must hold k if the tree holds it,
+     * so that a search for k can start there instead of at the root (finger search)
+     * The finger must hold a key smaller than or equal to k, or be the last node visited by a search for such a key.
+     * For keys searched in increasing order, each search then climbs and descends only as far as the keys are apart.
+     * 
+     * @param finger: node of this tree near k, or null to start from the root
+     * @param k: Key to search for
+     * @return The node the search for k should start from
+     */
+    protected BSTNode cover(BSTNode finger, Key k) {
+        if (finger == null) {
+            return root;
+        }
+        // Every key in the subtree of a left child is smaller than its parent's key; climb until k is too
+        BSTNode current = finger;
+        BSTNode parent = current.getParent();
+        while (parent != null && (parent.getRightChild() == current || k.compareTo(parent.getRecord().getKey()) >= 0)) {
+            current = parent;
+            parent = current.getParent();
+        }
+        return current;
     }
 
     /**
@@ -52,99 +145,335 @@ public class BinarySearchTree {
      * 
      * @param r: root node where the insertion starts
      * @param d: the record to insert
+     * @return The node created for d
      * @throws DictionaryException if a record with the same key already exists
      */
-    public void insert(BSTNode r, Record d) throws DictionaryException {
-        if (root == null) {
-            root = new BSTNode(d); // If tree is empty, inserted node becomes the root
-        } else {
-            insertRec(r, d); // Otherwise, insert record starting from root
+    public BSTNode insert(BSTNode r, Record d) throws DictionaryException {
+        BSTNode parent = search(r, d.getKey()); // Find the node the new record hangs from
+        if (parent != null && d.getKey().compareTo(parent.getRecord().getKey()) == 0) {
+            // A node with this key already exists, throw an exception
+            throw new DictionaryException("A record with the given key already exists.", true);
         }
+        return attach(parent, d);
     }
 
     /**
-     * Recursive method to insert a new record into the binary search tree
+     * Adds the record to the tree unless a record with the same key is already stored, in a single descent
      * 
-     * @param node: current node in the tree during the recursion
-     * @param d: record to insert
-     * @return The node itself or a new node if the insertion takes place
-     * @throws DictionaryException if a record with the same key already exists
+     * @param d: the record to insert
+     * @return The node already storing the key of d, or null if d was inserted
      */
-    private BSTNode insertRec(BSTNode node, Record d) throws DictionaryException {
-        if (node == null) {
-            // Base case: Reached a leaf node, insert the new node here
-            return new BSTNode(d);
+    public BSTNode insertIfAbsent(Record d) {
+        BSTNode parent = search(root, d.getKey());
+        if (parent != null && d.getKey().compareTo(parent.getRecord().getKey()) == 0) {
+            return parent;
         }
-        // Compare the keys to decide whether to go left or right
-        int comparison = d.getKey().compareTo(node.getRecord().getKey());
-        if (comparison == 0) {
-            // A node with this key already exists, throw an exception
-            throw new DictionaryException("A record with the given key already exists.");
-        } else if (comparison < 0) {
-            // The new key is smaller, go to the left subtree
-            node.setLeftChild(insertRec(node.getLeftChild(), d));
+        attach(parent, d);
+        return null;
+    }
+
+    /**
+     * Adds the record to the binary search tree with root r unless a record with the same key is already stored,
+     * in a single descent. Whether d was inserted shows in the modification count
+     * 
+     * @param r: root node where the search starts
+     * @param d: the record to insert
+     * @return The node storing the key of d: the existing node, or the node created for d
+     */
+    public BSTNode findOrInsert(BSTNode r, Record d) {
+        BSTNode parent = search(r, d.getKey());
+        if (parent != null && d.getKey().compareTo(parent.getRecord().getKey()) == 0) {
+            return parent;
+        }
+        return attach(parent, d);
+    }
+
+    /**
+     * Computes the new data of the record with key k from its current data, in a single descent
+     * The function receives null if the key is not stored; if it returns null the record is removed (or not added),
+     * otherwise the record is replaced (or added) with the returned data. The function must not modify the tree.
+     * 
+     * @param k: key of the record to compute
+     * @param remapping: function from the key and its current data (or null) to the new data (or null)
+     * @return The record now stored with key k, or null if there is none
+     */
+    public Record compute(Key k, BiFunction<Key, String, String> remapping) {
+        BSTNode node = search(root, k);
+        boolean found = node != null && k.compareTo(node.getRecord().getKey()) == 0;
+        String data = remapping.apply(k, found ? node.getRecord().getDataItem() : null);
+        if (data == null) {
+            if (found) {
+                removeNode(node);
+            }
+            return null;
+        }
+        if (found) {
+            Record replacement = new Record(node.getRecord().getKey(), data);
+            node.setRecord(replacement); // Same key, so the shape of the tree does not change
+            return replacement;
+        }
+        Record added = new Record(k, data);
+        attach(node, added);
+        return added;
+    }
+
+    /**
+     * Hangs a new node holding d below parent, on the side given by its key, and rebalances
+     * 
+     * @param parent: node returned by search for the key of d, which does not hold that key; null if the tree is empty
+     * @param d: the record to insert
+     * @return The node created for d
+     */
+    protected BSTNode attach(BSTNode parent, Record d) {
+        BSTNode node = new BSTNode(d);
+        if (parent == null) {
+            setRoot(node); // If tree is empty, inserted node becomes the root
+        } else if (d.getKey().compareTo(parent.getRecord().getKey()) < 0) { // Only the one link that changes is written
+            parent.setLeftChild(node);
         } else {
-            // The new key is larger, go to the right subtree
-            node.setRightChild(insertRec(node.getRightChild(), d));
+            parent.setRightChild(node);
         }
-        return node; // Return the unchanged node pointer
+        modCount++;
+        rebalanceFrom(parent);
+        return node;
     }
 
     /**
      * Removes the node with the specified key from the tree starting at the given root
-     * This is the public method that initiates the removal process
      * 
      * @param r: root of the subtree from which to remove the node
      * @param k: key of the node to be removed.
      * @throws DictionaryException if the node with the specified key does not exist in the tree.
      */
     public void remove(BSTNode r, Key k) throws DictionaryException {
-        root = removeRec(r, k); // Start the recursive removal process from the root
+        BSTNode node = get(r, k);
+        if (node == null) {
+            // Key not found in the tree
+            throw new DictionaryException("Key not found", true);
+        }
+        removeNode(node);
     }
 
     /**
-     * Recursive helper method to remove a node with a specific key from the tree
+     * Unlinks the given node from the tree
      * Handles three main cases: node with no child, node with one child, and node with two children
      * 
-     * @param node: current node being inspected
-     * @param k: key of the node to remove
-     * @return The altered subtree with the specified node removed
-     * @throws DictionaryException if the key is not found in the subtree rooted at the node
+     * @param node: node of this tree to remove
      */
-    private BSTNode removeRec(BSTNode node, Key k) throws DictionaryException {
-        if (node == null) {
-            // Base case: if the node is null, key not found in the tree
-            throw new DictionaryException("Key not found");
+    protected void removeNode(BSTNode node) {
+        if (node.getLeftChild() != null && node.getRightChild() != null) {
+            // Two children. Move the smallest record of the right subtree here and unlink that node instead
+            BSTNode smallest = smallest(node.getRightChild());
+            node.setRecord(smallest.getRecord());
+            node = smallest;
         }
+        // The node now has at most one child, which takes its place
+        BSTNode child = node.getLeftChild() != null ? node.getLeftChild() : node.getRightChild();
+        BSTNode parent = node.getParent();
+        replaceChild(parent, node, child);
+        modCount++;
+        rebalanceFrom(parent);
+    }
 
-        int comparison = k.compareTo(node.getRecord().getKey());
-        if (comparison < 0) {
-            // If key is smaller than the current node's key, go left
-            node.setLeftChild(removeRec(node.getLeftChild(), k));
-        } else if (comparison > 0) {
-            // If key is larger than the current node's key, go right
-            node.setRightChild(removeRec(node.getRightChild(), k));
-        } else {
-            // Found node to remove
-            if (node.getLeftChild() == null) {
-                // Case 1: No left child (including leaf node)
-                return node.getRightChild();
-            } else if (node.getRightChild() == null) {
-                // Case 2: No right child
-                return node.getLeftChild();
+    /**
+     * Called after a node below the given one was attached or unlinked, so that a balanced subclass
+     * can restore its invariants on the path up to the root. A plain binary search tree does nothing.
+     * 
+     * @param node: lowest node whose subtree changed (may be null)
+     */
+    protected void rebalanceFrom(BSTNode node) {
+    }
+
+    /**
+     * Replaces the contents of this tree with the given records, building a tree of minimum height in linear time
+     * The first count entries of sorted must be in strictly increasing key order
+     * 
+     * @param sorted: records in strictly increasing key order
+     * @param count: number of records of sorted to use
+     */
+    public void build(Record[] sorted, int count) {
+        setRoot(buildSubtree(sorted, 0, count - 1));
+        modCount++;
+    }
+
+    /**
+     * Adds many records at once: the records are sorted if they are not already in key order, merged with the
+     * records already in the tree, and the tree is rebuilt with minimum height, in linear time for sorted input
+     * Records whose key is already in the tree, or repeats an earlier record of the input, are not added.
+     * 
+     * @param records: records to add, in any order
+     * @param duplicates: receives the records that were not added, in key order
+     * @return The number of records in the tree afterwards
+     */
+    public int merge(Record[] records, List<Record> duplicates) {
+        // Records already in the tree, in key order
+        List<Record> existing = new ArrayList<>();
+        for (BSTNode node = smallest(root); node != null; node = nextNode(node)) {
+            existing.add(node.getRecord());
+        }
+        Record[] merged = mergeSorted(existing, records, duplicates);
+        build(merged, merged.length);
+        return merged.length;
+    }
+
+    /**
+     * Merges records with the records of a dictionary into one sequence in strictly increasing key order
+     * The records are sorted first if they are not already in key order. Records whose key is among the existing
+     * ones, or repeats an earlier record of the input, are left out; this takes linear time for sorted input.
+     * 
+     * @param existing: records already in the dictionary, in strictly increasing key order
+     * @param records: records to add, in any order
+     * @param duplicates: receives the records that were left out, in key order
+     * @return The merged records
+     */
+    public static Record[] mergeSorted(List<Record> existing, Record[] records, List<Record> duplicates) {
+        Comparator<Record> byKey = Comparator.comparing(Record::getKey);
+        Record[] incoming = records.clone();
+        if (!isSorted(incoming, byKey)) {
+            Arrays.sort(incoming, byKey); // Stable, so the first record of a duplicate key stays first
+        }
+
+        // Merge both sorted sequences, keeping the first record seen for every key
+        Record[] merged = new Record[existing.size() + incoming.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < existing.size() || j < incoming.length) {
+            Record next;
+            if (j == incoming.length || (i < existing.size() && byKey.compare(existing.get(i), incoming[j]) <= 0)) {
+                next = existing.get(i++);
+            } else {
+                next = incoming[j++];
             }
+            if (count > 0 && byKey.compare(merged[count - 1], next) == 0) {
+                duplicates.add(next); // Existing records and earlier input records win
+            } else {
+                merged[count++] = next;
+            }
+        }
+        return count == merged.length ? merged : Arrays.copyOf(merged, count);
+    }
 
-            // Case 3: Two children. Find the smallest node in the right subtree, replace the current node with that node, and remove that smallest node
-            BSTNode smallest = smallest(node.getRightChild());
-            node.setRecord(smallest.getRecord());
-            node.setRightChild(removeRec(node.getRightChild(), smallest.getRecord().getKey()));
+    /**
+     * Builds a tree of minimum height from sorted[lo..hi], using the middle record as the root
+     * 
+     * @param sorted: records in strictly increasing key order
+     * @param lo: index of the first record of the subtree
+     * @param hi: index of the last record of the subtree
+     * @return The root of the new subtree, or null if the range is empty
+     */
+    private BSTNode buildSubtree(Record[] sorted, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        BSTNode node = new BSTNode(sorted[mid]);
+        BSTNode left = buildSubtree(sorted, lo, mid - 1);
+        BSTNode right = buildSubtree(sorted, mid + 1, hi);
+        node.setLeftChild(left);
+        node.setRightChild(right);
+        // Keep the heights valid so that an AVLTree built this way can be updated afterwards
+        node.setHeight(1 + Math.max(left == null ? 0 : left.getHeight(), right == null ? 0 : right.getHeight()));
+        return node;
+    }
+
+    /**
+     * Returns the node storing the smallest key that is not smaller than k in the tree with root r,
+     * in a single descent; the key k does not need to be in the tree
+     * 
+     * @param r: Starting node for the search
+     * @param k: Key to search for
+     * @return The node with the smallest key >= k, or null if every key is smaller than k
+     */
+    public BSTNode ceiling(BSTNode r, Key k) {
+        BSTNode current = r;
+        BSTNode candidate = null;
+        while (current != null) {
+            int comparison = k.compareTo(current.getRecord().getKey());
+            if (comparison == 0) {
+                return current;
+            } else if (comparison < 0) {
+                candidate = current; // current is >= k, look for a smaller one on the left
+                current = current.getLeftChild();
+            } else {
+                current = current.getRightChild();
+            }
         }
-        return node; // Return the node itself (or its modified form).
+        return candidate;
+    }
+
+    /**
+     * Returns the node storing the largest key that is not larger than k in the tree with root r,
+     * in a single descent; the key k does not need to be in the tree
+     * 
+     * @param r: Starting node for the search
+     * @param k: Key to search for
+     * @return The node with the largest key <= k, or null if every key is larger than k
+     */
+    public BSTNode floor(BSTNode r, Key k) {
+        BSTNode current = r;
+        BSTNode candidate = null;
+        while (current != null) {
+            int comparison = k.compareTo(current.getRecord().getKey());
+            if (comparison == 0) {
+                return current;
+            } else if (comparison > 0) {
+                candidate = current; // current is <= k, look for a larger one on the right
+                current = current.getRightChild();
+            } else {
+                current = current.getLeftChild();
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Returns the node storing the smallest key strictly larger than k in the tree with root r,
+     * in a single descent; the key k does not need to be in the tree
+     * 
+     * @param r: Starting node for the search
+     * @param k: Key to search for
+     * @return The node with the smallest key > k, or null if no key is larger than k
+     */
+    public BSTNode higher(BSTNode r, Key k) {
+        BSTNode current = r;
+        BSTNode candidate = null;
+        while (current != null) {
+            if (k.compareTo(current.getRecord().getKey()) < 0) {
+                candidate = current; // current is > k, look for a smaller one on the left
+                current = current.getLeftChild();
+            } else {
+                current = current.getRightChild();
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Returns the node storing the largest key strictly smaller than k in the tree with root r,
+     * in a single descent; the key k does not need to be in the tree
+     * 
+     * @param r: Starting node for the search
+     * @param k: Key to search for
+     * @return The node with the largest key < k, or null if no key is smaller than k
+     */
+    public BSTNode lower(BSTNode r, Key k) {
+        BSTNode current = r;
+        BSTNode candidate = null;
+        while (current != null) {
+            if (k.compareTo(current.getRecord().getKey()) > 0) {
+                candidate = current; // current is < k, look for a larger one on the right
+                current = current.getRightChild();
+            } else {
+                current = current.getLeftChild();
+            }
+        }
+        return candidate;
     }
 
     /**
      * Finds the successor of the given key starting from the provided node
-     * The successor is the next-larger key in the tree
+     * The successor is the next-larger key in the tree; the given key does not need to be in the tree
      * Returns the node storing the successor of the given key in the tree with root r; returns null if the successor does not exist
      * 
      * @param r: Starting node for the search
@@ -152,34 +481,12 @@ public class BinarySearchTree {
      * @return The successor node, or null if no successor exists
      */
     public BSTNode successor(BSTNode r, Key k) {
-    	// Find the node with the given key
-        BSTNode current = get(r, k); 
-        if (current == null) {
-            return null; // If the node doesn't exist, there's no successor
-        }
-        if (current.getRightChild() != null) {
-            // If there's a right subtree, the successor is the smallest key in that subtree
-            return smallest(current.getRightChild());
-        }
-
-        // If no right subtree, the successor is up the tree
-        // Find the deepest ancestor for which the given node is in its left subtree
-        BSTNode successor = null;
-        BSTNode ancestor = root;
-        while (ancestor != current) {
-            if (current.getRecord().getKey().compareTo(ancestor.getRecord().getKey()) < 0) {
-                successor = ancestor; // This could be the next larger key
-                ancestor = ancestor.getLeftChild();
-            } else {
-                ancestor = ancestor.getRightChild();
-            }
-        }
-        return successor; // Return the found successor, or null if it doesn't exist
+        return higher(r, k);
     }
     
     /**
      * Finds the predecessor of the given key starting from the provided node
-     * The predecessor is the node with the largest key less than the given key
+     * The predecessor is the node with the largest key less than the given key; the given key does not need to be in the tree
      * Returns the node storing the predecessor of the given key in the tree with root r; returns null if the predecessor does not exist
      * 
      * @param r: starting node for the search
@@ -187,29 +494,48 @@ public class BinarySearchTree {
      * @return The predecessor node, or null if no predecessor exists
      */
     public BSTNode predecessor(BSTNode r, Key k) {
-        BSTNode current = get(root, k); // Start by finding the node with the given key
-        if (current == null) {
-            return null; // If the node with the given key does not exist, return null
-        }
-        
-        // If the left child is not null, the predecessor is the largest node in the left subtree
-        if (current.getLeftChild() != null) {
-            return largest(current.getLeftChild());
-        }
-        
-        // Otherwise, move up the tree from the current node until we find a node that is a right child
-        // The parent of such a node is the predecessor
-        BSTNode predecessor = null;
-        BSTNode ancestor = root;
-        while (ancestor != current) {
-            if (k.compareTo(ancestor.getRecord().getKey()) > 0) {
-                predecessor = ancestor; // Update predecessor as we move down the tree
-                ancestor = ancestor.getRightChild();
-            } else {
-                ancestor = ancestor.getLeftChild();
-            }
+        return lower(r, k);
+    }
+
+    /**
+     * Returns the node that follows the given node in key order, using the parent links
+     * Stepping through the whole tree this way costs amortized O(1) per node
+     * 
+     * @param node: node of this tree
+     * @return The next node in key order, or null if node holds the largest key
+     */
+    public BSTNode nextNode(BSTNode node) {
+        if (node.getRightChild() != null) {
+            return smallest(node.getRightChild()); // Leftmost node of the right subtree
+        }
+        // Climb until we come up from a left child
+        BSTNode child = node;
+        BSTNode parent = node.getParent();
+        while (parent != null && parent.getRightChild() == child) {
+            child = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    /**
+     * Returns the node that precedes the given node in key order, using the parent links
+     * 
+     * @param node: node of this tree
+     * @return The previous node in key order, or null if node holds the smallest key
+     */
+    public BSTNode previousNode(BSTNode node) {
+        if (node.getLeftChild() != null) {
+            return largest(node.getLeftChild()); // Rightmost node of the left subtree
         }
-        return predecessor;
+        // Climb until we come up from a right child
+        BSTNode child = node;
+        BSTNode parent = node.getParent();
+        while (parent != null && parent.getLeftChild() == child) {
+            child = parent;
+            parent = parent.getParent();
+        }
+        return parent;
     }
 
     /**
@@ -250,5 +576,15 @@ public class BinarySearchTree {
         return current; // The rightmost node is the largest
     }
 
-
+    /**
+     * Returns true if the records are in non-decreasing key order
+     */
+    private static boolean isSorted(Record[] records, Comparator<Record> byKey) {
+        for (int i = 1; i < records.length; i++) {
+            if (byKey.compare(records[i - 1], records[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,144 @@
+/**
+ * This class implements a Bloom filter over dictionary keys (label and type).
+ * mightContain answers false only for keys that were never added, so a lookup of a missing word can be rejected
+ * without searching the dictionary; it answers true for every added key and, with a small probability, for a key
+ * that was not added (a false positive). Keys cannot be taken out of a Bloom filter: removals are only counted,
+ * and the owner rebuilds the filter from its contents once too many of the added keys are gone.
+ *
+ * @author Ivory Huo
+ */
+
+public class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final int capacity;
+
+    private int added; // Keys added since the filter was built
+    private int removed; // Keys reported removed since the filter was built
+
+    private long negatives; // Lookups rejected by the filter
+    private long falsePositives; // Lookups let through for keys that turned out to be missing
+
+    /**
+     * Creates an empty filter sized for the given number of keys and false-positive rate
+     *
+     * @param capacity: number of keys the filter is sized for, at least 1
+     * @param falsePositiveRate: false-positive rate when capacity keys have been added, between 0 and 1 (exclusive)
+     * @throws IllegalArgumentException if an argument is out of range
+     */
+    public BloomFilter(int capacity, double falsePositiveRate) {
+        if (capacity < 1 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Invalid Bloom filter size or false-positive rate");
+        }
+        // Optimal number of bits m = -n ln p / (ln 2)^2, and of hash functions k = m / n ln 2
+        long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) Math.max(1, (m + 63) >>> 6)];
+        this.bitCount = (long) bits.length << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a key to the filter
+     *
+     * @param k: the key
+     */
+    public void add(Key k) {
+        long hash = hash(k);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1; // Odd, so the probes never collapse onto one bit
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount; // Double hashing
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        added++;
+    }
+
+    /**
+     * Returns false if the key was certainly never added; true if it may have been
+     *
+     * @param k: the key
+     * @return false for a definite miss, true otherwise
+     */
+    public boolean mightContain(Key k) {
+        long hash = hash(k);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1; // Odd, so the probes never collapse onto one bit
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                negatives++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that mightContain answered true for a key that turned out to be missing
+     */
+    public void falsePositive() {
+        falsePositives++;
+    }
+
+    /**
+     * Records that an added key was removed; its bits stay set until the filter is rebuilt
+     */
+    public void removed() {
+        removed++;
+    }
+
+    /**
+     * Returns the number of keys added and not reported removed
+     *
+     * @return the number of live keys
+     */
+    public int size() {
+        return added - removed;
+    }
+
+    /**
+     * Returns true if the filter should be rebuilt: more keys were added than it is sized for, so the false-positive
+     * rate has grown past the target, or more than half of the added keys are gone, so their bits are wasted
+     *
+     * @return true if the filter should be rebuilt
+     */
+    public boolean needsRebuild() {
+        return added > capacity || removed > added / 2;
+    }
+
+    /**
+     * Returns the false-positive rate expected from the number of keys added and the size of the filter,
+     * (1 - e^(-kn/m))^k for n keys, m bits and k hash functions
+     *
+     * @return the expected false-positive rate
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * added / bitCount), hashCount);
+    }
+
+    /**
+     * Returns the share of lookups of missing keys that the filter let through, or 0 if there were none
+     *
+     * @return the observed false-positive rate
+     */
+    public double getObservedFalsePositiveRate() {
+        long misses = negatives + falsePositives;
+        return misses == 0 ? 0 : (double) falsePositives / misses;
+    }
+
+    /**
+     * Returns 64 well-mixed bits from the 64-bit hash of the key; two keys share all their probes only if those
+     * 64 bits collide, not merely their 32-bit hash codes
+     */
+    private static long hash(Key k) {
+        long h = k.longHash();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,452 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+
+/**
+ * This class implements a thread-safe ordered dictionary on top of an AVL tree, guarded by a StampedLock.
+ * Lookups first run as optimistic reads that take no lock at all and are validated afterwards; only if a writer
+ * interfered is the lookup repeated under the read lock. Insertions and removals take the write lock.
+ * On a read-mostly workload readers therefore never write to shared memory and scale with the number of cores.
+ *
+ * Cursors, iterators and range scans read the records ahead of them in batches of SCAN_BATCH: one optimistic read
+ * descends to the position and follows the parent links to the next records, so a scan pays one descent per batch
+ * rather than per record. Each batch is atomic on its own, so a scan sees every record that is present for its whole
+ * duration but may or may not see concurrent changes. Stepping backward costs one descent per record.
+ *
+ * @author Ivory Huo
+ */
+
+public class ConcurrentBSTDictionary implements BSTDictionaryADT {
+
+    // Kinds of lookup performed by locate
+    private static final int GET = 0;
+    private static final int FLOOR = 1;
+    private static final int CEILING = 2;
+    private static final int LOWER = 3;
+    private static final int HIGHER = 4;
+    private static final int SMALLEST = 5;
+    private static final int LARGEST = 6;
+
+    // An optimistic read that walks more levels than any AVL tree can have saw a tree in mid-update
+    private static final int MAX_DEPTH = 128;
+
+    // Records read ahead by a cursor in one optimistic read
+    private static final int SCAN_BATCH = 32;
+
+    private final BinarySearchTree bst = new AVLTree();
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Returns the Record with key k, or null if the Record is not in the dictionary
+     *
+     * @param k: key of the record to retrieve
+     * @return The Record associated with the key if it exists, otherwise null
+     */
+    @Override
+    public Record get(Key k) {
+        return read(k, GET);
+    }
+
+    /**
+     * Inserts d into the ordered dictionary.
+     *
+     * @param d: record to insert into the dictionary
+     * @throws DictionaryException if a record with the same key already exists in the dictionary
+     */
+    @Override
+    public void put(Record d) throws DictionaryException {
+        long stamp = lock.writeLock();
+        try {
+            bst.insert(bst.getRoot(), d);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the Record with Key k from the dictionary.
+     *
+     * @param k: key of the record to remove
+     * @throws DictionaryException if the record is not found in the dictionary
+     */
+    @Override
+    public void remove(Key k) throws DictionaryException {
+        long stamp = lock.writeLock();
+        try {
+            bst.remove(bst.getRoot(), k);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically inserts d unless a Record with the same Key is already in the dictionary
+     *
+     * @param d: record to insert into the dictionary
+     * @return The record already stored with the key of d, or null if d was inserted
+     */
+    @Override
+    public Record putIfAbsent(Record d) {
+        long stamp = lock.writeLock();
+        try {
+            BSTNode existing = bst.insertIfAbsent(d);
+            return existing != null ? existing.getRecord() : null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically computes new data for the Key k from its current data; the function runs under the write lock
+     *
+     * @param k: key of the record to compute
+     * @param remapping: function from the key and its current data (or null) to the new data (or null to remove)
+     * @return The record now stored with key k, or null if there is none
+     */
+    @Override
+    public Record compute(Key k, BiFunction<Key, String, String> remapping) {
+        long stamp = lock.writeLock();
+        try {
+            return bst.compute(k, remapping);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically removes the Record with Key k if it is in the dictionary
+     *
+     * @param k: key of the record to remove
+     * @return true if the record was removed, false if it was not in the dictionary
+     */
+    @Override
+    public boolean tryRemove(Key k) {
+        long stamp = lock.writeLock();
+        try {
+            BSTNode node = bst.get(bst.getRoot(), k);
+            if (node == null) {
+                return false;
+            }
+            bst.removeNode(node);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds many records at once under the write lock, merging them with the records already in the dictionary and
+     * rebuilding the tree with minimum height, in linear time for sorted input
+     *
+     * @param records: records to add, in any order
+     * @return The records that were not added because of a duplicate key, in key order
+     */
+    @Override
+    public List<Record> load(Record[] records) {
+        List<Record> duplicates = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            bst.merge(records, duplicates);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return duplicates;
+    }
+
+    /**
+     * Returns the successor of k; the given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to find the successor for
+     * @return The successor record, or null if no successor exists.
+     */
+    @Override
+    public Record successor(Key k) {
+        return read(k, HIGHER);
+    }
+
+    /**
+     * Returns the predecessor of k; the given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to find the predecessor for
+     * @return The predecessor record, or null if no predecessor exists
+     */
+    @Override
+    public Record predecessor(Key k) {
+        return read(k, LOWER);
+    }
+
+    /**
+     * Returns the Record with the largest key smaller than or equal to k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record floor(Key k) {
+        return read(k, FLOOR);
+    }
+
+    /**
+     * Returns the Record with the smallest key larger than or equal to k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record ceiling(Key k) {
+        return read(k, CEILING);
+    }
+
+    /**
+     * Returns the Record with the largest key strictly smaller than k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record lower(Key k) {
+        return read(k, LOWER);
+    }
+
+    /**
+     * Returns the Record with the smallest key strictly larger than k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record higher(Key k) {
+        return read(k, HIGHER);
+    }
+
+    /**
+     * Returns the Record with smallest key in the ordered dictionary. Returns null if the dictionary is empty.
+     *
+     * @return The record with the smallest key, or null if the dictionary is empty.
+     */
+    @Override
+    public Record smallest() {
+        return read(null, SMALLEST);
+    }
+
+    /**
+     * Returns the Record with largest key in the ordered dictionary. Returns null if the dictionary is empty
+     *
+     * @return The record with the largest key, or null if the dictionary is empty
+     */
+    @Override
+    public Record largest() {
+        return read(null, LARGEST);
+    }
+
+    /**
+     * Returns a cursor positioned before the smallest record, which reads the records ahead of it in batches
+     *
+     * @return a cursor positioned before the smallest record
+     */
+    @Override
+    public DictionaryCursor cursor() {
+        return new BatchCursor(smallest());
+    }
+
+    /**
+     * Returns a cursor positioned before the smallest record whose key is not smaller than from, which reads the
+     * records ahead of it in batches
+     *
+     * @param from: lower bound of the records returned by the cursor
+     * @return a cursor whose next() returns the first record with key >= from
+     */
+    @Override
+    public DictionaryCursor cursor(Key from) {
+        return new BatchCursor(ceiling(from));
+    }
+
+    /**
+     * Fills batch with the records that follow k, in key order, as an optimistic read, falling back to the read
+     * lock if a writer interfered
+     *
+     * @param k: key the records follow; it does not need to be in the dictionary
+     * @param batch: receives the records
+     * @return The number of records read, less than the length of batch only at the end of the dictionary
+     */
+    private int readAfter(Key k, Record[] batch) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int count = collect(k, batch);
+                if (lock.validate(stamp)) {
+                    return count;
+                }
+            } catch (NullPointerException | IllegalStateException e) {
+                // A writer changed the tree under the optimistic read, as in read
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return collect(k, batch);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Descends to the record after k and follows the parent links to the records after it, filling batch
+     */
+    private int collect(Key k, Record[] batch) {
+        BSTNode node = locate(k, HIGHER);
+        int count = 0;
+        while (node != null && count < batch.length) {
+            batch[count++] = node.getRecord();
+            node = next(node);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the node after the given one in key order, like BinarySearchTree.nextNode, but gives up after
+     * MAX_DEPTH levels, which only happens when racing with a writer
+     *
+     * @throws IllegalStateException if the walk went further than MAX_DEPTH levels
+     */
+    private static BSTNode next(BSTNode node) {
+        int depth = 0;
+        if (node.getRightChild() != null) {
+            node = node.getRightChild();
+            while (node.getLeftChild() != null) {
+                node = node.getLeftChild();
+                if (++depth > MAX_DEPTH) {
+                    throw new IllegalStateException("Tree modified during optimistic read");
+                }
+            }
+            return node;
+        }
+        BSTNode parent = node.getParent();
+        while (parent != null && parent.getRightChild() == node) {
+            node = parent;
+            parent = parent.getParent();
+            if (++depth > MAX_DEPTH) {
+                throw new IllegalStateException("Tree modified during optimistic read");
+            }
+        }
+        return parent;
+    }
+
+    /**
+     * Runs a lookup as an optimistic read, falling back to the read lock if a writer interfered
+     *
+     * @param k: key to search for (unused for SMALLEST and LARGEST)
+     * @param mode: kind of lookup
+     * @return The record found, or null
+     */
+    private Record read(Key k, int mode) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                BSTNode node = locate(k, mode);
+                Record result = node != null ? node.getRecord() : null;
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (NullPointerException | IllegalStateException e) {
+                // A writer changed the tree under the optimistic read: a link or record was seen half-updated,
+                // or a rotation sent the descent in circles. Retry under the lock, where a real bug surfaces again
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            BSTNode node = locate(k, mode);
+            return node != null ? node.getRecord() : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Single descent from the root for every kind of lookup
+     * The descent gives up after MAX_DEPTH levels, which only happens when racing with a writer.
+     *
+     * @param k: key to search for
+     * @param mode: kind of lookup
+     * @return The node found, or null
+     * @throws IllegalStateException if the descent went deeper than MAX_DEPTH
+     */
+    private BSTNode locate(Key k, int mode) {
+        BSTNode current = bst.getRoot();
+        BSTNode candidate = null;
+        for (int depth = 0; current != null; depth++) {
+            if (depth > MAX_DEPTH) {
+                throw new IllegalStateException("Tree modified during optimistic read");
+            }
+            if (mode == SMALLEST || mode == LARGEST) {
+                candidate = current;
+                current = mode == SMALLEST ? current.getLeftChild() : current.getRightChild();
+                continue;
+            }
+            int comparison = k.compareTo(current.getRecord().getKey());
+            if (comparison == 0 && (mode == GET || mode == FLOOR || mode == CEILING)) {
+                return current;
+            }
+            boolean below = mode == FLOOR || mode == LOWER;
+            if (mode != GET && (below ? comparison > 0 : comparison < 0)) {
+                candidate = current;
+            }
+            // On an equal key, lower keeps looking left and higher keeps looking right
+            current = comparison < 0 || (comparison == 0 && below) ? current.getLeftChild() : current.getRightChild();
+        }
+        return mode == GET ? null : candidate;
+    }
+
+    /**
+     * Cursor that reads the records after it SCAN_BATCH at a time and steps backward with predecessor
+     */
+    private final class BatchCursor implements DictionaryCursor {
+        private Record before; // Record just before the cursor, or null
+        private Record after; // Record just after the cursor, or null
+        private final Record[] ahead = new Record[SCAN_BATCH]; // Records read after the record after the cursor
+        private int aheadNext;
+        private int aheadCount;
+
+        BatchCursor(Record after) {
+            this.after = after;
+            this.before = after != null ? predecessor(after.getKey()) : largest();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return after != null;
+        }
+
+        @Override
+        public Record next() {
+            if (after == null) {
+                throw new NoSuchElementException();
+            }
+            before = after;
+            if (aheadNext == aheadCount) {
+                aheadCount = readAfter(before.getKey(), ahead);
+                aheadNext = 0;
+            }
+            after = aheadNext < aheadCount ? ahead[aheadNext++] : null;
+            return before;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return before != null;
+        }
+
+        @Override
+        public Record previous() {
+            if (before == null) {
+                throw new NoSuchElementException();
+            }
+            after = before;
+            before = predecessor(after.getKey());
+            aheadNext = 0; // The records read ahead followed the old position
+            aheadCount = 0;
+            return after;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * This class runs the dictionary commands of the user interface (define, translate, about, list, first, last, add
+ * and delete) and returns their answers as text, so that the keyboard interface and DictionaryServer parse commands
+ * and answer them in the same way. Commands that play or show media, or save and load snapshots, are left to the
+ * user interface.
+ *
+ * If a write-ahead log is given, add and delete make their change and write its log entry together, under the log's
+ * lock, so the log records the changes of all threads in the order the dictionary saw them. A change must not be
+ * reported to the user until its entry is on disk: run records the changes it makes in a Changes object, and the
+ * caller passes it to awaitDurable before it sends the answers. Several commands may share one Changes object,
+ * so that a batch of changes waits for one group commit.
+ *
+ * If the log fails, the changes whose entries were not written are undone, those of all threads, latest first and
+ * under the log's lock. The failed log refuses every later change, so nothing can have been built on them since.
+ *
+ * @author Ivory Huo
+ */
+
+public class DictionaryCommands {
+
+    /** Answer to a line that is not a command */
+    public static final String INVALID_COMMAND = "Invalid command.";
+
+    private final BSTDictionaryADT dictionary;
+    private final WriteAheadLog log;
+
+    // Changes of all threads whose log entries may not be on disk yet, in log order; guarded by the log's lock
+    private final ArrayDeque<Unlogged> unlogged = new ArrayDeque<>();
+
+    /**
+     * Creates the commands for a dictionary
+     *
+     * @param dictionary: the dictionary the commands work on; it must be thread-safe if several threads run commands
+     * @param log: the log that records add and delete commands, or null if changes are not logged
+     */
+    public DictionaryCommands(BSTDictionaryADT dictionary, WriteAheadLog log) {
+        this.dictionary = dictionary;
+        this.log = log;
+    }
+
+    /**
+     * Runs one dictionary command and returns its answer
+     * The command is split into the command name, the word, the type and the data, as typed by the user.
+     * A successful add or delete answers with an empty string. The answer to about has one line per record.
+     *
+     * @param command: the command line
+     * @param changes: learns the log entries of the changes made by the command
+     * @return The answer, without a final line break, or null if the line is not a dictionary command
+     */
+    public String run(String command, Changes changes) {
+        // Split the command into its constituent parts for analysis.
+        String[] parts = command.split(" ");
+        String cmd = parts[0]; // The primary command indicating the desired action.
+        String word = parts.length > 1 ? parts[1] : ""; // The target word for the command, if applicable.
+        int type = -1; // The type of the media or translation, initialized to an invalid value.
+        String data = parts.length >= 4 ? parts[3] : ""; // Additional data required for some commands, like 'add'.
+
+        // Determine if a type is specified for commands that require it (e.g., delete).
+        if (parts.length >= 3) {
+            try {
+                type = Integer.parseInt(parts[2]);
+            } catch (NumberFormatException e) {
+                return "Error: Type must be an integer.";
+            }
+        }
+
+        switch (cmd) {
+            case "define":
+                return lookup(word, 1, "The word " + word + " is not in the dictionary");
+            case "translate":
+                return lookup(word, 2, "There is no definition for the word " + word);
+            case "about":
+                return about(word);
+            case "list":
+                return list(word);
+            case "first":
+                return describe(dictionary.smallest());
+            case "last":
+                return describe(dictionary.largest());
+            case "add":
+                return add(new Record(new Key(word, type), data), changes);
+            case "delete":
+                return delete(new Key(word, type), changes);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Waits until the log entries of the given changes are on disk, then forgets the changes
+     *
+     * @param changes: changes recorded by run
+     * @throws IOException if the log failed before the entries were written; they are then never written
+     */
+    public void awaitDurable(Changes changes) throws IOException {
+        if (changes.lastEntry > 0) {
+            log.awaitDurable(changes.lastEntry);
+            synchronized (log) {
+                long durable = log.getDurable();
+                while (!unlogged.isEmpty() && unlogged.peekFirst().entry <= durable) {
+                    unlogged.removeFirst();
+                }
+            }
+        }
+        changes.clear();
+    }
+
+    /**
+     * Undoes the changes whose log entries were never written, after awaitDurable failed, then forgets the given changes
+     * If the log has failed, the changes of every thread that are not on disk are undone, latest first, under the
+     * log's lock, so the dictionary matches what a restart would load. If awaitDurable failed only because the log
+     * was closed or the wait was interrupted, the entries may still be written, and nothing is undone.
+     *
+     * @param changes: changes recorded by run whose log entries were not written
+     * @param e: why the log entries were not written
+     * @return The answer to report instead of the answers of the given commands
+     */
+    public String undo(Changes changes, IOException e) {
+        String notDone = changes.notDone;
+        synchronized (log) {
+            if (log.hasFailed()) {
+                long durable = log.getDurable();
+                while (!unlogged.isEmpty() && unlogged.peekLast().entry > durable) {
+                    unlogged.removeLast().undo.run();
+                }
+                unlogged.clear();
+            }
+        }
+        changes.clear();
+        return "Error writing log: " + e.getMessage() + ". " + notDone;
+    }
+
+    /**
+     * Retrieves the data of the record with the given word and type, or the given error message if there is none
+     */
+    private String lookup(String word, int type, String errorMessage) {
+        Record record = dictionary.get(new Key(word, type));
+        return record != null ? record.getDataItem() : errorMessage;
+    }
+
+    /**
+     * Lists every record stored for a word, one per line as type and data, in type order.
+     * All the records of a word are adjacent in the ordered dictionary, so they are fetched together in one lookup.
+     */
+    private String about(String word) {
+        Record[] records = dictionary.getAll(word);
+        if (records.length == 0) {
+            return "The word " + word + " is not in the dictionary";
+        }
+        StringBuilder output = new StringBuilder();
+        for (Record record : records) {
+            if (output.length() > 0) {
+                output.append('\n');
+            }
+            output.append(record.getKey().getType()).append(',').append(record.getDataItem());
+        }
+        return output.toString();
+    }
+
+    /**
+     * Lists the labels of the records that start with the given prefix, comma-separated.
+     * The scan seeks directly to the first matching record and stops after the last one.
+     */
+    private String list(String prefix) {
+        StringBuilder output = new StringBuilder();
+        Iterator<Record> matches = dictionary.prefix(prefix);
+        while (matches.hasNext()) {
+            if (output.length() > 0) {
+                output.append(", ");
+            }
+            output.append(matches.next().getKey().getLabel());
+        }
+        return output.length() > 0 ? output.toString() : "No label attributes in the dictionary start with prefix " + prefix;
+    }
+
+    /**
+     * Adds a record unless its key is already in the dictionary; the check and the insertion are one lookup.
+     * If the addition cannot be written to the log, the record is removed again.
+     */
+    private String add(Record record, Changes changes) {
+        Key key = record.getKey();
+        String exists = "Skipping addition: A record with the given key (" + key.getLabel() + "," + key.getType() + ") already exists in the dictionary.";
+        String notDone = "The record was not added.";
+        if (log == null) {
+            return dictionary.putIfAbsent(record) == null ? "" : exists;
+        }
+        // The change and its log entry are made under the log's lock, so log order matches dictionary order
+        synchronized (log) {
+            if (dictionary.putIfAbsent(record) != null) {
+                return exists;
+            }
+            try {
+                changes.add(logged(log.logPut(record), () -> dictionary.tryRemove(key)), notDone);
+            } catch (IOException e) {
+                dictionary.tryRemove(key); // A change that is not logged is not kept
+                return "Error writing log: " + e.getMessage() + ". " + notDone;
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Deletes the record with the given key, if there is one.
+     * If the removal cannot be written to the log, the record is put back.
+     */
+    private String delete(Key key, Changes changes) {
+        String missing = "No record in the ordered dictionary has key (" + key.getLabel() + "," + key.getType() + ").";
+        String notDone = "The record was not deleted.";
+        if (log == null) {
+            return dictionary.tryRemove(key) ? "" : missing;
+        }
+        synchronized (log) {
+            Record removed = dictionary.get(key); // Writers hold the log's lock, so it is still there below
+            if (removed == null || !dictionary.tryRemove(key)) {
+                return missing;
+            }
+            try {
+                changes.add(logged(log.logRemove(key), () -> dictionary.putIfAbsent(removed)), notDone);
+            } catch (IOException e) {
+                dictionary.putIfAbsent(removed);
+                return "Error writing log: " + e.getMessage() + ". " + notDone;
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Remembers how to undo the change of a log entry until the entry is on disk; called under the log's lock
+     */
+    private long logged(long entry, Runnable undo) {
+        unlogged.addLast(new Unlogged(entry, undo));
+        return entry;
+    }
+
+    /**
+     * Describes a record as its label, type and data, for the first and last commands
+     */
+    private static String describe(Record record) {
+        if (record == null) {
+            return "The dictionary is empty";
+        }
+        return record.getKey().getLabel() + "," + record.getKey().getType() + "," + record.getDataItem();
+    }
+
+    /**
+     * A change whose log entry may not be on disk yet: the sequence number of the entry and how to undo the change
+     */
+    private static final class Unlogged {
+        final long entry;
+        final Runnable undo;
+
+        Unlogged(long entry, Runnable undo) {
+            this.entry = entry;
+            this.undo = undo;
+        }
+    }
+
+    /**
+     * Changes made by one user's commands whose log entries may not be on disk yet: the sequence number of the last
+     * entry (0 if there is none), and what to report if it is never written
+     */
+    public static final class Changes {
+        private long lastEntry;
+        private String notDone = "";
+
+        /**
+         * Returns true if some change is still waiting for its log entry
+         *
+         * @return true if awaitDurable has to be called before the changes are reported
+         */
+        public boolean isPending() {
+            return lastEntry > 0;
+        }
+
+        private void add(long entry, String notDoneMessage) {
+            lastEntry = entry;
+            notDone = notDoneMessage;
+        }
+
+        private void clear() {
+            lastEntry = 0;
+            notDone = "";
+        }
+    }
+}
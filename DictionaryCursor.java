@@ -0,0 +1,21 @@
+import java.util.Iterator;
+
+public interface DictionaryCursor extends Iterator<Record> {
+    /* Cursor over the records of an ordered dictionary, in key order. The cursor sits between
+       two records: next() returns the record after it and moves forward, previous() returns
+       the record before it and moves backward. */
+
+    /* Returns true if there is a record after the cursor position. */
+    public boolean hasNext ();
+
+    /* Returns the record after the cursor position and moves the cursor past it. It throws a
+       NoSuchElementException if the cursor is at the end of the dictionary. */
+    public Record next ();
+
+    /* Returns true if there is a record before the cursor position. */
+    public boolean hasPrevious ();
+
+    /* Returns the record before the cursor position and moves the cursor back over it. It throws a
+       NoSuchElementException if the cursor is at the beginning of the dictionary. */
+    public Record previous ();
+}
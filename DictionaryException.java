@@ -2,4 +2,11 @@ public class DictionaryException extends Exception {
   public DictionaryException(String mssg) {
     super(mssg);
   }
+
+  /* Creates an exception that, if stackless, does not record a stack trace. Dictionaries throw stackless
+     exceptions to report duplicates and misses, which are ordinary outcomes whose stack trace would cost
+     more to fill in than the lookup itself. */
+  public DictionaryException(String mssg, boolean stackless) {
+    super(mssg, null, false, !stackless);
+  }
 }
@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class reads dictionary input files: a label line followed by a data line for every record.
+ * The file is split into chunks that start on record boundaries, the chunks are parsed and classified
+ * in parallel on a fork-join pool, and the sorted results are merged, ready for BSTDictionary.load.
+ * In mapped mode the file is mapped into memory with FileChannel.map instead of being copied onto the heap;
+ * newlines are found directly in the mapped bytes and text is only decoded when a Record is built.
+ *
+ * @author Ivory Huo
+ */
+
+public class DictionaryLoader {
+
+    // Files smaller than this are parsed as a single chunk
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    // Orders records by key; used to sort each chunk and to merge the chunks
+    private static final Comparator<Record> BY_KEY = Comparator.comparing(Record::getKey);
+
+    private ForkJoinPool pool;
+    private boolean mapped;
+
+    /**
+     * Creates a loader that runs on the common fork-join pool and reads files onto the heap
+     */
+    public DictionaryLoader() {
+        this(ForkJoinPool.commonPool(), false);
+    }
+
+    /**
+     * Creates a loader that runs on the given fork-join pool
+     *
+     * @param pool: pool used to parse the chunks of the input
+     * @param mapped: true to map input files into memory instead of reading them onto the heap
+     */
+    public DictionaryLoader(ForkJoinPool pool, boolean mapped) {
+        this.pool = pool;
+        this.mapped = mapped;
+    }
+
+    /**
+     * Reads all the records of the given input file
+     * Labels are converted to lower case and the data of each record is classified with createRecord.
+     * A trailing label with no data line is ignored.
+     *
+     * @param file: the input file, in the platform's default charset (as read by FileReader)
+     * @return The records of the file sorted by key; records with the same key keep their order in the file
+     * @throws IOException if the file cannot be read, or is too large to be mapped in one piece
+     */
+    public Record[] read(Path file) throws IOException {
+        if (!mapped) {
+            return parse(ByteBuffer.wrap(Files.readAllBytes(file)));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Parses the records stored in the given buffer, from position 0 to its limit
+     *
+     * @param buffer: the contents of an input file
+     * @return The records sorted by key
+     */
+    protected Record[] parse(ByteBuffer buffer) {
+        int size = buffer.limit();
+        int chunks = size < MIN_CHUNK_SIZE ? 1 : Math.max(1, Math.min(pool.getParallelism() * 4, size / MIN_CHUNK_SIZE));
+
+        // Chunk boundaries, each moved forward to the start of a line
+        int[] bounds = new int[chunks + 1];
+        for (int i = 1; i < chunks; i++) {
+            bounds[i] = Math.max(bounds[i - 1], nextLineStart(buffer, (int) ((long) size * i / chunks)));
+        }
+        bounds[chunks] = size;
+
+        // Count the lines of every chunk in parallel to find out which chunks start on a data line
+        List<ForkJoinTask<Integer>> counts = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            counts.add(pool.submit(ForkJoinTask.adapt(() -> countLines(buffer, from, to))));
+        }
+        boolean[] startsOnData = new boolean[chunks];
+        long line = 0;
+        for (int i = 0; i < chunks; i++) {
+            startsOnData[i] = (line & 1) == 1;
+            line += counts.get(i).join();
+        }
+
+        return pool.invoke(new ChunkTask(buffer, bounds, startsOnData, 0, chunks));
+    }
+
+    /**
+     * Creates a Record object by associating the provided label and type-specific data.
+     * This method interprets the prefix or suffix of the typeData to determine the type of the record
+     * (e.g., sound file, music file, voice file, etc.) and formats the data accordingly before storing.
+     *
+     * @param label The label for the record, representing the key under which the data is stored.
+     * @param typeData The raw data string that may start with a specific character or end with a specific extension
+     *                 indicating its type (e.g., sound, music, voice, translation, image, animated image, URL).
+     * @return A new Record object with the formatted data and a key generated from the label and data type.
+     */
+    public static Record createRecord(String label, String typeData) {
+        return createRecord(label, typeData, false);
+    }
+
+    /**
+     * Creates a Record as createRecord(String, String) does
+     *
+     * @param label The label for the record.
+     * @param typeData The raw data string.
+     * @param lowerCase true if label is already in lower case and must not be converted again.
+     * @return A new Record object with the formatted data and a key generated from the label and data type.
+     */
+    private static Record createRecord(String label, String typeData, boolean lowerCase) {
+        int type; // Variable to store the type of the record based on the typeData's prefix/suffix.
+        String data; // Variable to store the formatted data after removing type indicators.
+
+        // Determine the type of the record based on specific indicators in typeData.
+        if (typeData.startsWith("-")) {
+            type = 3; // Indicates a sound file.
+            data = typeData.substring(1); // Remove the indicator before storing.
+        } else if (typeData.startsWith("+")) {
+            type = 4; // Indicates a music file.
+            data = typeData.substring(1); // Remove the indicator before storing.
+        } else if (typeData.startsWith("*")) {
+            type = 5; // Indicates a voice file.
+            data = typeData.substring(1); // Remove the indicator before storing.
+        } else if (typeData.startsWith("/")) {
+            type = 2; // Indicates a French translation.
+            data = typeData.substring(1); // Remove the indicator before storing.
+        } else if (typeData.endsWith(".gif")) {
+            type = 7; // Indicates an animated image file.
+            data = typeData; // No need to remove any indicator.
+        } else if (typeData.endsWith(".jpg")) {
+            type = 6; // Indicates an image file.
+            data = typeData; // No need to remove any indicator.
+        } else if (typeData.endsWith(".html")) {
+            type = 8; // Indicates a URL.
+            data = typeData; // No need to remove any indicator.
+        } else {
+            type = 1; // Default type, indicates a definition.
+            data = typeData; // No need to remove any indicator.
+        }
+
+        // Create and return a new Record object with the determined type and formatted data.
+        return new Record(lowerCase ? Key.fromLowerCase(label, type) : new Key(label, type), data);
+    }
+
+    /**
+     * Returns the offset of the first line that starts at or after the given offset
+     */
+    private static int nextLineStart(ByteBuffer buffer, int offset) {
+        if (offset == 0) {
+            return 0;
+        }
+        int pos = offset;
+        while (pos < buffer.limit() && buffer.get(pos - 1) != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the offset of the end of the line starting at the given offset (the newline or the end of the buffer)
+     */
+    private static int lineEnd(ByteBuffer buffer, int offset) {
+        int pos = offset;
+        while (pos < buffer.limit() && buffer.get(pos) != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the number of lines that start in [from, to); from must be the start of a line
+     */
+    private static int countLines(ByteBuffer buffer, int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        int lines = 1;
+        for (int pos = from; pos < to - 1; pos++) {
+            if (buffer.get(pos) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Decodes the text in [from, to) with the default charset, dropping a trailing carriage return
+     */
+    private static String decode(ByteBuffer buffer, int from, int to) {
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--;
+        }
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, Charset.defaultCharset());
+    }
+
+    /**
+     * Decodes the label in [from, to) and converts it to lower case
+     * ASCII labels are lowered while copying the bytes, without building an intermediate String
+     */
+    private static String decodeLabel(ByteBuffer buffer, int from, int to) {
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--;
+        }
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            byte b = buffer.get(from + i);
+            if (b < 0) {
+                return decode(buffer, from, to).toLowerCase(); // Not ASCII
+            }
+            bytes[i] = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Parses the records whose label line starts in [from, to) and sorts them by key
+     */
+    private static Record[] parseChunk(ByteBuffer buffer, int from, int to, boolean startsOnData) {
+        List<Record> records = new ArrayList<>();
+        int pos = from;
+        if (startsOnData && pos < to) {
+            pos = lineEnd(buffer, pos) + 1; // The data line belongs to the label at the end of the previous chunk
+        }
+        while (pos < to) {
+            int labelEnd = lineEnd(buffer, pos);
+            int dataStart = labelEnd + 1;
+            if (dataStart >= buffer.limit()) {
+                break; // Label with no data line
+            }
+            int dataEnd = lineEnd(buffer, dataStart);
+            records.add(createRecord(decodeLabel(buffer, pos, labelEnd), decode(buffer, dataStart, dataEnd), true));
+            pos = dataEnd + 1;
+        }
+        Record[] sorted = records.toArray(new Record[0]);
+        Arrays.sort(sorted, BY_KEY);
+        return sorted;
+    }
+
+    /**
+     * Merges two arrays sorted by key; on equal keys the record of left comes first
+     */
+    private static Record[] merge(Record[] left, Record[] right) {
+        Record[] merged = new Record[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < left.length && j < right.length) {
+            merged[k++] = BY_KEY.compare(left[i], right[j]) <= 0 ? left[i++] : right[j++];
+        }
+        while (i < left.length) {
+            merged[k++] = left[i++];
+        }
+        while (j < right.length) {
+            merged[k++] = right[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Fork-join task that parses a range of chunks and merge-sorts their records
+     */
+    private static class ChunkTask extends RecursiveTask<Record[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+        private final int[] bounds;
+        private final boolean[] startsOnData;
+        private final int first;
+        private final int last; // Exclusive
+
+        ChunkTask(ByteBuffer buffer, int[] bounds, boolean[] startsOnData, int first, int last) {
+            this.buffer = buffer;
+            this.bounds = bounds;
+            this.startsOnData = startsOnData;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Record[] compute() {
+            if (last - first == 1) {
+                return parseChunk(buffer, bounds[first], bounds[first + 1], startsOnData[first]);
+            }
+            int mid = (first + last) >>> 1;
+            ChunkTask left = new ChunkTask(buffer, bounds, startsOnData, first, mid);
+            ChunkTask right = new ChunkTask(buffer, bounds, startsOnData, mid, last);
+            left.fork();
+            Record[] rightRecords = right.compute();
+            return merge(left.join(), rightRecords);
+        }
+    }
+}
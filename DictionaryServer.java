@@ -0,0 +1,234 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class serves a dictionary to many clients over TCP on the loopback interface.
+ * The protocol is line based: a client sends commands of the user interface (define, translate, list, add, delete,
+ * first and last), one per line, and gets exactly one line back for each, in the order sent. add and delete answer
+ * OK when they succeed. A client may send many commands without waiting for the answers: answers are written to a
+ * buffer that is only flushed when no more commands are waiting on the connection, so a pipelined batch is answered
+ * with few writes. The command exit, or closing the connection, ends the session.
+ *
+ * Commands are parsed and answered by DictionaryCommands, so the answers are those of the user interface; this class
+ * only carries them over the connection. Each connection is served by its own thread and all of them share one
+ * dictionary, which must be thread-safe. At most MAX_CLIENTS connections are served at once, by a pool of as many
+ * threads; a client that connects beyond that is answered with a busy line and disconnected. If a write-ahead log is
+ * given, answers are only sent once the log entries of the changes they acknowledge are on disk. A pipelined batch
+ * waits for its last entry once, so it shares one group commit. If the log fails, the changes it did not write are
+ * undone and their clients are disconnected without an answer.
+ *
+ * @author Ivory Huo
+ */
+
+public class DictionaryServer implements Closeable {
+
+    // Most connections served at once, each by a thread of its own
+    private static final int MAX_CLIENTS = 64;
+
+    // Answer to a client that connects while MAX_CLIENTS connections are open, before it is disconnected
+    private static final String BUSY = "Too many clients, try again later.";
+
+    // Answers held back for a pipelined batch before they are sent anyway
+    private static final int MAX_UNSENT_CHARS = 64 * 1024;
+
+    // Commands whose answer is a single line; the others are left to the user interface
+    private static final Set<String> SERVED = Set.of("define", "translate", "list", "add", "delete", "first", "last");
+
+    private final DictionaryCommands commands;
+
+    private final ExecutorService connections = Executors.newFixedThreadPool(MAX_CLIENTS, r -> {
+        Thread t = new Thread(r, "dictionary-client");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+    private ServerSocket server;
+    private Thread acceptor;
+
+    /**
+     * Creates a server for the dictionary; it does not accept connections until start is called
+     *
+     * @param dictionary: the thread-safe dictionary shared by all clients
+     * @param log: the log that records add and delete commands, or null if changes are not logged
+     */
+    public DictionaryServer(BSTDictionaryADT dictionary, WriteAheadLog log) {
+        this.commands = new DictionaryCommands(dictionary, log);
+    }
+
+    /**
+     * Starts accepting connections on the loopback interface, on a background thread
+     *
+     * @param port: the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The server is already started");
+        }
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::accept, "dictionary-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return the local port
+     */
+    public synchronized int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Waits until the server stops accepting connections
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Stops accepting connections and closes the connections that are open
+     *
+     * @throws IOException if the listening socket cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        connections.shutdownNow();
+        for (Socket client : clients) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Hands every accepted connection to a thread of its own, until the listening socket is closed
+     * A connection beyond MAX_CLIENTS is answered BUSY and closed; only this thread adds clients, so they never exceed it.
+     */
+    private void accept() {
+        while (true) {
+            Socket client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                return; // Closed
+            }
+            if (clients.size() >= MAX_CLIENTS) {
+                refuse(client);
+                continue;
+            }
+            clients.add(client);
+            try {
+                connections.execute(() -> serve(client));
+            } catch (RuntimeException e) {
+                // Closing: the pool takes no more connections
+                clients.remove(client);
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                    // Closing anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells a client that connected beyond MAX_CLIENTS to try again later, and closes the connection
+     */
+    private static void refuse(Socket client) {
+        try (Socket socket = client;
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            out.write(BUSY + "\n");
+        } catch (IOException e) {
+            // The client went away
+        }
+    }
+
+    /**
+     * Answers the commands of one client until it sends exit or closes the connection
+     */
+    private void serve(Socket client) {
+        try (Socket socket = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            StringBuilder answers = new StringBuilder();
+            DictionaryCommands.Changes changes = new DictionaryCommands.Changes();
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.equals("exit")) {
+                    break;
+                }
+                answers.append(command(line, changes)).append('\n');
+                // Answers to pipelined commands are sent together, once the client has nothing more waiting
+                if (!in.ready() || answers.length() >= MAX_UNSENT_CHARS) {
+                    send(socket, out, answers, changes);
+                }
+            }
+            send(socket, out, answers, changes);
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Sends the buffered answers once the log entries of the changes they acknowledge are on disk
+     * If the log fails first, those entries are never written: the changes of every client that are not on disk are
+     * undone, under the log's lock, and the connection is closed without sending the answers. Other clients may have
+     * read the changes before they were undone, as they may read any change before it is durable.
+     */
+    private void send(Socket socket, Writer out, StringBuilder answers, DictionaryCommands.Changes changes) throws IOException {
+        if (changes.isPending()) {
+            try {
+                commands.awaitDurable(changes);
+            } catch (IOException e) {
+                commands.undo(changes, e);
+                socket.close(); // Changes that are never written are never confirmed
+                throw e;
+            }
+        }
+        out.append(answers);
+        out.flush();
+        answers.setLength(0);
+    }
+
+    /**
+     * Runs one command and returns its answer, a single line without the line break
+     * Commands are run by DictionaryCommands, as in the user interface; a successful add or delete answers OK.
+     *
+     * @param command: the command line, as typed in the user interface
+     * @param changes: the connection's changes whose answers are not sent yet
+     * @return the answer to send back
+     */
+    String command(String command, DictionaryCommands.Changes changes) {
+        if (!SERVED.contains(command.split(" ")[0])) {
+            return DictionaryCommands.INVALID_COMMAND;
+        }
+        String answer = commands.run(command, changes);
+        return answer.isEmpty() ? "OK" : answer;
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This class saves an ordered dictionary to a compact binary snapshot and reads it back.
+ * The records are written in key order, each as a length-prefixed UTF-8 label, the type and length-prefixed
+ * UTF-8 data (the type and the lengths are variable-length integers), after a header holding the record count, the
+ * length of the records and a CRC-32 of the records and the rest of the header.
+ * Reading maps the file and returns the records already sorted, so they can be given straight to
+ * BSTDictionary.load without going through DictionaryLoader.createRecord again.
+ *
+ * @author Ivory Huo
+ */
+
+public class DictionarySnapshot {
+
+    // "ODS1" in ASCII
+    private static final int MAGIC = 0x4F445331;
+    private static final int VERSION = 2;
+
+    // magic, version, record count, body length, checksum of the body and of the header fields before it
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+    private static final int CHECKED_HEADER_SIZE = HEADER_SIZE - 8;
+
+    /**
+     * Writes all the records of the dictionary, or of any sequence of records in key order, to the given file
+     * The snapshot is written to a temporary file that then replaces the target, so an interrupted save
+     * never leaves a partial snapshot behind, and the directory is forced afterwards so the replacement itself
+     * survives a crash. The temporary file is deleted if the save fails, whatever the reason.
+     *
+     * @param dictionary: the dictionary or records to save, in key order
+     * @param file: the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Iterable<Record> dictionary, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean saved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.position(HEADER_SIZE);
+                CRC32 checksum = new CRC32();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(Channels.newOutputStream(channel), checksum)));
+                int count = 0;
+                for (Record r : dictionary) {
+                    writeString(out, r.getKey().getLabel());
+                    writeVarInt(out, r.getKey().getType());
+                    writeString(out, r.getDataItem());
+                    count++;
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(count).putLong(out.size());
+                checksum.update(header.array(), 0, CHECKED_HEADER_SIZE);
+                header.putLong(checksum.getValue());
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            saved = true;
+        } finally {
+            if (!saved) {
+                Files.deleteIfExists(temp); // Also after a RuntimeException, such as a dictionary changed mid-save
+            }
+        }
+        forceDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Reads the records of a snapshot file
+     *
+     * @param file: the snapshot file
+     * @return The records of the snapshot, in key order
+     * @throws IOException if the file cannot be read, is not a snapshot or fails its checksum
+     */
+    public static Record[] read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 8 || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a dictionary snapshot: " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a dictionary snapshot: " + file);
+            }
+            if (buffer.remaining() < HEADER_SIZE - 8) {
+                throw new IOException("Truncated dictionary snapshot: " + file);
+            }
+            int count = buffer.getInt();
+            long length = buffer.getLong();
+            long expected = buffer.getLong();
+            if (length != buffer.remaining()) {
+                throw new IOException("Truncated dictionary snapshot: " + file);
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.duplicate());
+            checksum.update(buffer.slice(0, CHECKED_HEADER_SIZE));
+            if (checksum.getValue() != expected || count < 0) {
+                throw new IOException("Corrupt dictionary snapshot: " + file);
+            }
+
+            Record[] records = new Record[count];
+            for (int i = 0; i < count; i++) {
+                String label = readString(buffer);
+                records[i] = new Record(Key.fromLowerCase(label, readVarInt(buffer)), readString(buffer));
+            }
+            return records;
+        } catch (RuntimeException e) { // Lengths that run past the end of the file
+            throw new IOException("Corrupt dictionary snapshot: " + file);
+        }
+    }
+
+    /**
+     * Returns true if the given file starts with the magic number and the version of a snapshot
+     * A text file that happens to start with the magic number is not taken for a snapshot, since text has no zero
+     * bytes where the version is. A snapshot that is truncated or damaged past these 8 bytes is still recognised,
+     * so that read reports it rather than the file being parsed as text.
+     *
+     * @param file: file to check
+     * @return true if the file looks like a dictionary snapshot
+     */
+    public static boolean isSnapshot(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // Keep reading until the magic number and version are complete or the file ends
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Forces the directory entry changes of the given directory to disk
+     * Some platforms cannot open a directory for reading; there the rename is left to the file system.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel dir = channel) {
+            dir.force(true);
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString
+     */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readVarInt(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an int 7 bits per byte, low bits first, so small values take a single byte
+     * A negative value takes 5 bytes.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by writeVarInt
+     */
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 32);
+        return value;
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This class compares the throughput of BSTDictionary, ArrayDictionary, ConcurrentBSTDictionary and
+ * SkipListDictionary under the same workloads, after the heap taken per record by BSTDictionary and ArrayDictionary. Each dictionary starts with half of a fixed set of keys, and every thread runs random operations on
+ * keys drawn from the whole set for a fixed time: a read-mostly mix (90% get, 5% putIfAbsent, 5% tryRemove), a
+ * write-heavy mix (50% get, 25% putIfAbsent, 25% tryRemove), and short range scans (ten records from a random key).
+ * Half of the inserts and removals find the key already present, so the size of the dictionary stays steady.
+ * BSTDictionary and ArrayDictionary are not thread-safe and are only run on one thread.
+ *
+ * Usage: java DictionaryThroughputBenchmark [threads...]
+ * Without arguments it runs on 1, 2, 4, 8, 16 and 32 threads. The number of processors is printed with the results,
+ * since thread counts above it measure contention rather than scaling.
+ *
+ * @author Ivory Huo
+ */
+
+public class DictionaryThroughputBenchmark {
+
+    private static final int KEYS = 200000;
+    private static final long WARM_UP_MILLIS = 1000;
+    private static final long RUN_MILLIS = 2000;
+    private static final int SCAN_LENGTH = 10;
+    private static final int[] DEFAULT_THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    // Upper bound of the scans, above every key
+    private static final Key END = new Key("\uffff", Integer.MAX_VALUE);
+
+    // Workloads: percentages of get and of putIfAbsent (the rest are tryRemove), or a scan
+    private static final String[] WORKLOADS = {"read-mostly", "write-heavy", "scan"};
+    private static final int[][] MIXES = {{90, 5}, {50, 25}, null};
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threadCounts;
+        if (args.length > 0) {
+            threadCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                threadCounts[i] = Integer.parseInt(args[i]);
+            }
+        } else {
+            threadCounts = DEFAULT_THREAD_COUNTS;
+        }
+
+        Key[] keys = new Key[KEYS];
+        Random random = new Random(7);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = new Key("word" + random.nextInt(Integer.MAX_VALUE), 1 + i % 2);
+        }
+
+        System.out.printf("Heap per record: BSTDictionary %.0f bytes, ArrayDictionary %.0f bytes%n",
+                heapPerRecord(() -> new BSTDictionary(true), keys), heapPerRecord(ArrayDictionary::new, keys));
+        System.out.printf("%d keys, half present, %d processors; operations per second%n", KEYS,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-12s %8s %16s %16s %24s %19s%n", "workload", "threads", "BSTDictionary", "ArrayDictionary",
+                "ConcurrentBSTDictionary", "SkipListDictionary");
+        for (int w = 0; w < WORKLOADS.length; w++) {
+            for (int threads : threadCounts) {
+                String plain = threads == 1 ? format(run(() -> new BSTDictionary(true), keys, w, 1)) : "-";
+                String array = threads == 1 ? format(run(ArrayDictionary::new, keys, w, 1)) : "-";
+                String concurrent = format(run(ConcurrentBSTDictionary::new, keys, w, threads));
+                String skipList = format(run(SkipListDictionary::new, keys, w, threads));
+                System.out.printf("%-12s %8d %16s %16s %24s %19s%n", WORKLOADS[w], threads, plain, array, concurrent,
+                        skipList);
+            }
+        }
+    }
+
+    /**
+     * Fills a new dictionary, runs the workload on the threads, and returns the operations per second
+     */
+    private static double run(Supplier<BSTDictionaryADT> factory, Key[] keys, int workload, int threads)
+            throws InterruptedException {
+        BSTDictionaryADT dictionary = factory.get();
+        for (int i = 0; i < keys.length; i += 2) {
+            dictionary.putIfAbsent(new Record(keys[i], "data"));
+        }
+
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder operations = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                long count = 0;
+                boolean counting = false;
+                while (!stop.get()) {
+                    if (!counting && measuring.get()) {
+                        counting = true;
+                        count = 0;
+                    }
+                    step(dictionary, keys, workload, random);
+                    count++;
+                }
+                operations.add(count);
+                done.countDown();
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        Thread.sleep(WARM_UP_MILLIS);
+        measuring.set(true);
+        long start = System.nanoTime();
+        Thread.sleep(RUN_MILLIS);
+        stop.set(true);
+        long elapsed = System.nanoTime() - start;
+        done.await();
+        return operations.sum() * 1e9 / elapsed;
+    }
+
+    /**
+     * Returns the growth of the used heap per record when a new dictionary is filled with every key
+     * The records are created with labels and data of their own, as they would be after reading a file, and then
+     * dropped, so that the growth counts whatever the dictionary keeps of them.
+     */
+    private static double heapPerRecord(Supplier<BSTDictionaryADT> factory, Key[] keys) {
+        long before = usedHeap();
+        Record[] records = new Record[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            records[i] = new Record(new Key(new String(keys[i].getLabel()), keys[i].getType()), new String("data"));
+        }
+        BSTDictionaryADT dictionary = factory.get();
+        for (Record r : records) {
+            dictionary.putIfAbsent(r);
+        }
+        records = null; // Only what the dictionary keeps is counted
+        long after = usedHeap();
+        if (dictionary.smallest() == null) {
+            System.out.println("empty"); // Keeps the dictionary reachable until here
+        }
+        return (double) (after - before) / keys.length;
+    }
+
+    /**
+     * Returns the used heap after collecting garbage
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Runs one random operation of the workload
+     */
+    private static void step(BSTDictionaryADT dictionary, Key[] keys, int workload, Random random) {
+        Key k = keys[random.nextInt(keys.length)];
+        int[] mix = MIXES[workload];
+        if (mix == null) {
+            Iterator<Record> scan = dictionary.range(k, END);
+            for (int i = 0; i < SCAN_LENGTH && scan.hasNext(); i++) {
+                scan.next();
+            }
+            return;
+        }
+        int choice = random.nextInt(100);
+        if (choice < mix[0]) {
+            dictionary.get(k);
+        } else if (choice < mix[0] + mix[1]) {
+            dictionary.putIfAbsent(new Record(k, "data"));
+        } else {
+            dictionary.tryRemove(k);
+        }
+    }
+
+    private static String format(double operationsPerSecond) {
+        return String.format("%,.0f", operationsPerSecond);
+    }
+}
@@ -6,50 +6,168 @@
 
 //removed the package
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 
 public class Interface {
 	
+	// Write-ahead log settings: entries forced to disk together, longest wait before forcing, entries between checkpoints.
+	private static final int LOG_GROUP_SIZE = 64;
+	private static final long LOG_MAX_DELAY_MILLIS = 50;
+	private static final int LOG_CHECKPOINT_INTERVAL = 100000;
+
+	// Number of records kept in the cache of frequently requested words (0 for no cache). Off by default: the cache only
+	// pays off when lookups are heavily skewed (Zipf exponent of about 0.8 or more) and slows down other lookups;
+	// run RecordCacheBenchmark on the input file to decide.
+	private static final int CACHE_SIZE = 0;
+
+	// Target false-positive rate of the filter that rejects lookups of words not in the dictionary.
+	private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+	// Media warm-up at startup: files decoded at the same time (0 to skip the warm-up), and most bytes decoded.
+	private static final int PREFETCH_THREADS = 4;
+	private static final long PREFETCH_BUDGET_BYTES = 64L * 1024 * 1024;
+
+	// Write-ahead log of add and delete commands, or null if the dictionary is not persisted.
+	private static WriteAheadLog log;
+
+	// Runner of the dictionary commands typed by the user, and the changes it made that are not logged on disk yet.
+	private static DictionaryCommands commands;
+	private static final DictionaryCommands.Changes changes = new DictionaryCommands.Changes();
+
+	// Audio started by the last sound, play or say command, or null if none was played.
+	private static SoundPlayer.Playback playback;
+
+	// Windows reused by the show, animate and browse commands, created the first time each is needed.
+	private static PictureViewer pictureViewer;
+	private static PictureViewer animatedViewer;
+	private static ShowHTML browser;
+
+	// Images and pages still being loaded for the show, animate and browse commands, whose failures are not reported yet.
+	private static final List<CompletableFuture<Void>> shownMedia = new ArrayList<>();
+
 	/**
 	 * Entry point for the application.
 	 * This method initializes the application, loads data into the dictionary from a specified file,
 	 * and enters an interactive mode allowing for various commands to be executed until an 'exit' command is issued.
+	 * If a log directory is given, add and delete commands are recorded in a write-ahead log there and replayed
+	 * at the next start, on top of the last checkpoint (which then takes the place of the input file).
+	 * With -server, the dictionary is served to many clients at once over TCP on the loopback interface
+	 * (see DictionaryServer) instead of through the keyboard, until 'exit' is entered.
 	 * 
-	 * @param args Command-line arguments, expecting exactly one argument: the path to the input file.
+	 * @param args Command-line arguments: the path to the input file (a text file of label and data lines,
+	 *             or a snapshot written by the save command), optionally followed by a log directory,
+	 *             optionally followed by -server and the port to listen on.
 	 */
 	public static void main(String[] args) {
-	    // Ensure exactly one command-line argument is provided. If not, display usage instructions and exit.
-	    if (args.length != 1) {
-	        System.out.println("Usage: java Interface inputFile");
+	    // Split off the server option, then ensure one or two file arguments remain. If not, display usage instructions and exit.
+	    int port = -1;
+	    int fileArgs = args.length;
+	    if (args.length >= 2 && args[args.length - 2].equals("-server")) {
+	        try {
+	            port = Integer.parseInt(args[args.length - 1]);
+	        } catch (NumberFormatException e) {
+	            port = -1;
+	        }
+	        fileArgs -= 2;
+	        if (port < 0 || port > 65535) {
+	            System.out.println("Error: Port must be a number from 0 to 65535.");
+	            return;
+	        }
+	    }
+	    if (fileArgs < 1 || fileArgs > 2) {
+	        System.out.println("Usage: java Interface inputFile [logDirectory] [-server port]");
 	        return;
 	    }
 	    
-	    // Initialize the dictionary where records will be stored.
+	    // Initialize the dictionary where records will be stored. Clients of the server share a persistent one, so that
+	    // a list command scans a consistent snapshot without blocking the writers.
 	    String inputFile = args[0];
-	    BSTDictionary dictionary = new BSTDictionary();
+	    BSTDictionary dictionary = null;
+	    BSTDictionaryADT shared;
+	    if (port < 0) {
+	        dictionary = new BSTDictionary(true, CACHE_SIZE, FILTER_FALSE_POSITIVE_RATE);
+	        shared = dictionary;
+	    } else {
+	        shared = new PersistentDictionary();
+	    }
+	    
+	    // Open the write-ahead log, if one was requested.
+	    if (fileArgs == 2) {
+	        try {
+	            log = new WriteAheadLog(shared, Paths.get(args[1]), LOG_GROUP_SIZE, LOG_MAX_DELAY_MILLIS, LOG_CHECKPOINT_INTERVAL);
+	        } catch (IOException e) {
+	            System.out.println("Error opening log: " + e.getMessage());
+	            return;
+	        }
+	    }
 	    
-	    // Attempt to open and read from the input file.
-	    try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-	        String label; // To hold the label part of the record.
+	    // The input file is only needed if there is no checkpoint to start from.
+	    if (log == null || !log.hasCheckpoint()) {
+	        // Attempt to read the input file: a binary snapshot is read directly, a text file is mapped into memory
+	        // and parsed in parallel. Either way the records come back sorted by key.
+	        Record[] records;
+	        try {
+	            Path inputPath = Paths.get(inputFile);
+	            if (DictionarySnapshot.isSnapshot(inputPath)) {
+	                records = DictionarySnapshot.read(inputPath);
+	            } else {
+	                records = new DictionaryLoader(ForkJoinPool.commonPool(), true).read(inputPath);
+	            }
+	        } catch (IOException e) {
+	            // Handle potential I/O exceptions from reading the file.
+	            System.out.println("Error reading file: " + e.getMessage());
+	            return;
+	        }
 	        
-	        // Loop through each line of the file, reading labels and their corresponding data.
-	        while ((label = reader.readLine()) != null) {
-	            // Normalize label to lower case for consistent handling.
-	            label = label.toLowerCase();
-	            String data = reader.readLine(); // Read the data associated with the label.
-	            
-	            // Create a record from the label and data, and add it to the dictionary.
-	            Record record = createRecord(label, data);
-	            dictionary.put(record);
+	        // Build the dictionary in one pass; records with duplicate keys are reported and skipped.
+	        for (Record duplicate : shared.load(records)) {
+	            System.out.println("Dictionary error: duplicate key (" + duplicate.getKey().getLabel() + "," + duplicate.getKey().getType() + ")");
+	        }
+	    }
+	    
+	    // Bring the dictionary up to date with the checkpoint and the changes logged since.
+	    if (log != null) {
+	        try {
+	            log.recover();
+	        } catch (IOException e) {
+	            System.out.println("Error recovering from log: " + e.getMessage());
+	            return;
 	        }
+	    }
+	    
+	    if (port >= 0) {
+	        serve(shared, port);
+	    } else {
+	        commands = new DictionaryCommands(dictionary, log);
+	        interact(dictionary);
+	    }
+	    
+	    // Make sure every logged change is on disk before exiting.
+	    if (log != null) {
+	        try {
+	            log.close();
+	        } catch (IOException e) {
+	            System.out.println("Error closing log: " + e.getMessage());
+	        }
+	    }
+	}
 
-	    } catch (IOException e) {
-	        // Handle potential I/O exceptions from reading the file.
-	        System.out.println("Error reading file: " + e.getMessage());
-	        return;
-	    } catch (DictionaryException e) {
-	        // Handle exceptions related to dictionary operations.
-	        System.out.println("Dictionary error: " + e.getMessage());
-	        return;
+	/**
+	 * Processes commands typed by the user until 'exit' is entered, then stops any audio still playing.
+	 * 
+	 * @param dictionary The BSTDictionary the commands work on.
+	 */
+	private static void interact(BSTDictionary dictionary) {
+	    // Check the media files of the dictionary and decode them in the background ahead of the first request.
+	    if (PREFETCH_THREADS > 0) {
+	        prefetchMedia(dictionary);
 	    }
 	    
 	    // Interactive command loop for processing user commands.
@@ -60,6 +178,9 @@ public class Interface {
 	    while (true) {
 	        line = keyboard.read("Enter next command: ").trim(); // Read and trim the command.
 	        
+	        // Media is played in the background, so its failures are reported before the next command runs.
+	        reportMediaFailures();
+	        
 	        if (line.equals("exit")) {
 	            // Exit the loop if the command is 'exit'.
 	            break;
@@ -68,91 +189,104 @@ public class Interface {
 	        // Process the command entered by the user.
 	        command(line, dictionary);
 	    }
+	    
+	    stopAudio();
 	}
 
 	/**
-	 * Creates a Record object by associating the provided label and type-specific data.
-	 * This method interprets the prefix or suffix of the typeData to determine the type of the record
-	 * (e.g., sound file, music file, voice file, etc.) and formats the data accordingly before storing.
+	 * Serves the dictionary to clients over TCP until 'exit' is entered. If the keyboard is not available
+	 * (the input is closed), the server runs until the process is stopped.
 	 * 
-	 * @param label The label for the record, representing the key under which the data is stored.
-	 * @param typeData The raw data string that may start with a specific character or end with a specific extension
-	 *                 indicating its type (e.g., sound, music, voice, translation, image, animated image, URL).
-	 * @return A new Record object with the formatted data and a key generated from the label and data type.
+	 * @param dictionary The thread-safe dictionary shared by all clients.
+	 * @param port The port to listen on, or 0 for any free port.
 	 */
-	private static Record createRecord(String label, String typeData) {
-	    int type; // Variable to store the type of the record based on the typeData's prefix/suffix.
-	    String data; // Variable to store the formatted data after removing type indicators.
-	    
-	    // Determine the type of the record based on specific indicators in typeData.
-	    if (typeData.startsWith("-")) {
-	        type = 3; // Indicates a sound file.
-	        data = typeData.substring(1); // Remove the indicator before storing.
-	    } else if (typeData.startsWith("+")) {
-	        type = 4; // Indicates a music file.
-	        data = typeData.substring(1); // Remove the indicator before storing.
-	    } else if (typeData.startsWith("*")) {
-	        type = 5; // Indicates a voice file.
-	        data = typeData.substring(1); // Remove the indicator before storing.
-	    } else if (typeData.startsWith("/")) {
-	        type = 2; // Indicates a French translation.
-	        data = typeData.substring(1); // Remove the indicator before storing.
-	    } else if (typeData.endsWith(".gif")) {
-	        type = 7; // Indicates an animated image file.
-	        data = typeData; // No need to remove any indicator.
-	    } else if (typeData.endsWith(".jpg")) {
-	        type = 6; // Indicates an image file.
-	        data = typeData; // No need to remove any indicator.
-	    } else if (typeData.endsWith(".html")) {
-	        type = 8; // Indicates a URL.
-	        data = typeData; // No need to remove any indicator.
-	    } else {
-	        type = 1; // Default type, indicates a definition.
-	        data = typeData; // No need to remove any indicator.
+	private static void serve(BSTDictionaryADT dictionary, int port) {
+	    try (DictionaryServer server = new DictionaryServer(dictionary, log)) {
+	        server.start(port);
+	        System.out.println("Serving the dictionary on port " + server.getPort() + "; enter 'exit' to stop.");
+	        BufferedReader keyboard = new BufferedReader(new InputStreamReader(System.in));
+	        String line;
+	        while ((line = keyboard.readLine()) != null) {
+	            if (line.trim().equals("exit")) {
+	                return;
+	            }
+	        }
+	        server.join();
+	    } catch (IOException e) {
+	        System.out.println("Error running server: " + e.getMessage());
+	    } catch (InterruptedException e) {
+	        // Stopping
 	    }
-	    
-	    // Create and return a new Record object with the determined type and formatted data.
-	    return new Record(new Key(label, type), data);
 	}
-	
+
+	/**
+	 * Reports the media records whose file is missing, then decodes the media files into the media caches
+	 * on a background thread, so that the first command is not delayed, and reports the files that cannot be decoded.
+	 * 
+	 * @param dictionary The BSTDictionary whose media records are checked.
+	 */
+	private static void prefetchMedia(BSTDictionary dictionary) {
+	    MediaPrefetcher prefetcher = new MediaPrefetcher(PREFETCH_THREADS, PREFETCH_BUDGET_BYTES);
+	    for (Record r : prefetcher.check(dictionary)) {
+	        System.out.println("Media file not found: " + r.getDataItem() + " (" + r.getKey().getLabel() + "," + r.getKey().getType() + ")");
+	    }
+	    // The warm-up walks its own copy of the media records, since the dictionary is not thread-safe.
+	    List<Record> media = new ArrayList<>();
+	    for (Record r : dictionary) {
+	        if (r.getKey().getType() >= 3 && r.getKey().getType() <= 8) {
+	            media.add(r);
+	        }
+	    }
+	    Thread warmUp = new Thread(() -> {
+	        try {
+	            // Files that exist but cannot be decoded are only found by decoding them.
+	            for (Record r : prefetcher.prefetch(media).getUnreadable()) {
+	                System.out.println("Media file cannot be read: " + r.getDataItem() + " (" + r.getKey().getLabel() + "," + r.getKey().getType() + ")");
+	            }
+	        } catch (InterruptedException e) {
+	            // Exiting
+	        }
+	    }, "media-warm-up");
+	    warmUp.setDaemon(true);
+	    warmUp.start();
+	}
+
 	/**
 	 * Processes user commands by interpreting the input and invoking the corresponding method in the BSTDictionary.
-	 * The method splits the input command into parts to identify the action, target word, type, and additional data if any.
-	 * It then executes the corresponding dictionary operation or media action based on the command.
+	 * Dictionary commands (define, translate, about, list, first, last, add and delete) are run by DictionaryCommands;
+	 * the media, save and load commands are handled here.
 	 *
 	 * @param command   The full user command input as a String.
 	 * @param dictionary The BSTDictionary instance where records are stored and managed.
 	 */
 	private static void command(String command, BSTDictionary dictionary) {
-	    // Split the command into its constituent parts for analysis.
+	    // Dictionary commands are answered as DictionaryServer answers them; a change is reported once it is logged.
+	    String answer = commands.run(command, changes);
+	    if (answer != null) {
+	        if (changes.isPending()) {
+	            try {
+	                commands.awaitDurable(changes);
+	            } catch (IOException e) {
+	                answer = commands.undo(changes, e); // The change is not kept, since a restart would not have it.
+	            }
+	        }
+	        if (!answer.isEmpty()) {
+	            System.out.println(answer);
+	        }
+	        IOException checkpointFailure = log != null ? log.takeCheckpointFailure() : null;
+	        if (checkpointFailure != null) {
+	            System.out.println("Error writing checkpoint: " + checkpointFailure.getMessage());
+	        }
+	        return;
+	    }
+	    
+	    // The remaining commands only use the word; run has already rejected a type that is not an integer.
 	    String[] parts = command.split(" ");
 	    String cmd = parts[0]; // The primary command indicating the desired action.
 	    String word = parts.length > 1 ? parts[1] : ""; // The target word for the command, if applicable.
-	    int type = -1; // The type of the media or translation, initialized to an invalid value.
-	    String data = ""; // Additional data required for some commands, like 'add'.
-	    
-	    // Determine if a type is specified for commands that require it (e.g., delete).
-	    if (parts.length >= 3) {
-	        try {
-	            type = Integer.parseInt(parts[2]);
-	        } catch (NumberFormatException e) {
-	            System.out.println("Error: Type must be an integer.");
-	            return;
-	        }
-	    }
-	    // For commands that include data, capture the data part of the command.
-	    if (parts.length >= 4) {
-	        data = parts[3];
-	    }
 	    
 	    // Process the command using a switch statement to match the primary command part.
 	    switch (cmd) {
-	        case "define":
-	            defineOrTranslate(word, dictionary, 1, "The word " + word + " is not in the dictionary");
-	            break;
-	        case "translate":
-	            defineOrTranslate(word, dictionary, 2, "There is no definition for the word " + word);
-	            break;
 	        case "sound":
 	            playMedia(word, dictionary, 3, "There is no sound file for " + word);
 	            break;
@@ -162,6 +296,9 @@ public class Interface {
 	        case "say":
 	            playMedia(word, dictionary, 5, "There is no voice file for " + word);
 	            break;
+	        case "stop":
+	            stopAudio();
+	            break;
 	        case "show":
 	            showMedia(word, dictionary, 6, "There is no image file for " + word);
 	            break;
@@ -171,55 +308,24 @@ public class Interface {
 	        case "browse":
 	            showMedia(word, dictionary, 8, "There is no webpage called " + word);
 	            break;
-	        case "delete":
-	            delete(word, type, dictionary);
-	            break;
-	        case "add":
-	            add(word, type, data, dictionary);
+	        case "save":
+	            save(word, dictionary);
 	            break;
-	        case "list":
-	            list(word, dictionary);
-	            break;
-	        case "first":
-	            first(dictionary);
-	            break;
-	        case "last":
-	            last(dictionary);
+	        case "load":
+	            load(word, dictionary);
 	            break;
 	        default:
-	            System.out.println("Invalid command.");
+	            System.out.println(DictionaryCommands.INVALID_COMMAND);
 	            break;
 	    }
 	}
 
-	/**
-	 * Attempts to define a word or translate it based on the provided type.
-	 * This method retrieves a record from the dictionary using the given word and type.
-	 * If the record exists, it displays the associated data; otherwise, it shows an error message.
-	 * 
-	 * @param word The word to define or translate.
-	 * @param dictionary The BSTDictionary from which to retrieve the record.
-	 * @param type The type of data to retrieve (e.g., definition, translation).
-	 * @param errorMessage The error message to display if the record does not exist.
-	 */
-	private static void defineOrTranslate(String word, BSTDictionary dictionary, int type, String errorMessage) {
-	    // Attempt to retrieve the record associated with the given word and type.
-	    Record record = dictionary.get(new Key(word, type));
-	    
-	    // Check if the record exists and display the data or an error message accordingly.
-	    if (record != null) {
-	        // Record found - display its data.
-	        System.out.println(record.getDataItem());
-	    } else {
-	        // Record not found - display the specified error message.
-	        System.out.println(errorMessage);
-	    }
-	}
-	
 	/**
 	 * Plays media associated with a word if available.
 	 * This method looks up a record by word and type, attempting to play the associated media file.
 	 * If the media file is found, it is played using a SoundPlayer; otherwise, an error message is displayed.
+	 * Playback runs in the background, so the next command can be entered while it plays; any audio still
+	 * playing from an earlier command is stopped first.
 	 * 
 	 * @param word The word associated with the media file to play.
 	 * @param dictionary The BSTDictionary from which to retrieve the media file.
@@ -234,19 +340,48 @@ public class Interface {
 	    if (record != null) {
 	        // Initialize a SoundPlayer to play the media file.
 	        SoundPlayer soundPlayer = new SoundPlayer();
-	        try {
-	            // Attempt to play the media file.
-	            soundPlayer.play(record.getDataItem());
-	        } catch (MultimediaException e) {
-	            // An error occurred while playing the media - display the error message.
-	            System.out.println("Error playing media: " + e.getMessage());
-	        }
+	        // Play the media file; a file that cannot be played is reported before the next command.
+	        stopAudio();
+	        playback = soundPlayer.play(record.getDataItem());
 	    } else {
 	        // No associated media file found - display the specified error message.
 	        System.out.println(errorMessage);
 	    }
 	}
     
+	/**
+	 * Stops the audio started by the last sound, play or say command, if it is still playing.
+	 */
+	private static void stopAudio() {
+	    reportMediaFailures();
+	    if (playback != null) {
+	        playback.stop();
+	        playback = null;
+	    }
+	}
+    
+	/**
+	 * Reports the media started in the background by earlier commands that could not be played or shown,
+	 * and forgets the media that is done.
+	 */
+	private static void reportMediaFailures() {
+	    if (playback != null && playback.getError() != null) {
+	        System.out.println("Error playing media: " + playback.getError().getMessage());
+	        playback = null;
+	    }
+	    shownMedia.removeIf(shown -> {
+	        if (!shown.isDone()) {
+	            return false;
+	        }
+	        try {
+	            shown.join();
+	        } catch (CompletionException e) {
+	            System.out.println("Error displaying media: " + e.getCause().getMessage());
+	        }
+	        return true;
+	    });
+	}
+    
 	/**
 	 * Displays media (images, animated images, web pages) associated with a word, if available.
 	 * This method retrieves a record by word and type and attempts to display the associated media.
@@ -266,14 +401,20 @@ public class Interface {
 	        try {
 	            // Determine the type of media and use the appropriate viewer to display it.
 	            if (type == 6) { // For static images.
-	                PictureViewer pictureViewer = new PictureViewer();
-	                pictureViewer.show(record.getDataItem()); // Display the image.
+	                if (pictureViewer == null) {
+	                    pictureViewer = new PictureViewer();
+	                }
+	                shownMedia.add(pictureViewer.show(record.getDataItem())); // Display the image.
 	            } else if (type == 7) { // For animated images.
-	                PictureViewer animatedViewer = new PictureViewer();
-	                animatedViewer.show(record.getDataItem()); // Display the animated image.
+	                if (animatedViewer == null) {
+	                    animatedViewer = new PictureViewer();
+	                }
+	                shownMedia.add(animatedViewer.show(record.getDataItem())); // Display the animated image.
 	            } else if (type == 8) { // For web pages.
-	                ShowHTML showHTML = new ShowHTML();
-	                showHTML.show(record.getDataItem()); // Display the webpage.
+	                if (browser == null) {
+	                    browser = new ShowHTML();
+	                }
+	                shownMedia.add(browser.show(record.getDataItem())); // Display the webpage.
 	            }
 	        } catch (MultimediaException e) {
 	            // An error occurred while displaying the media - print the error message.
@@ -285,123 +426,50 @@ public class Interface {
 	    }
 	}
 
-	/**
-	 * Deletes a record from the dictionary based on the given word and type.
-	 * This method attempts to remove a record identified by a specific word and type.
-	 * If the record does not exist, an error message is displayed to the user.
-	 * 
-	 * @param word The word that identifies the record to be deleted.
-	 * @param type The type of the record to be deleted.
-	 * @param dictionary The BSTDictionary from which to remove the record.
-	 */
-	private static void delete(String word, int type, BSTDictionary dictionary) {
-	    try {
-	        // Attempt to remove the record with the specified key from the dictionary.
-	        Key key = new Key(word, type);
-	        dictionary.remove(key);
-	    } catch (DictionaryException e) {
-	        // The record could not be found - display an error message indicating the issue.
-	        System.out.println("No record in the ordered dictionary has key (" + word + "," + type + ").");
-	    }
-	}
-    
-	/**
-	 * Adds a new record to the dictionary if the key does not already exist.
-	 * This prevents duplicate keys in the dictionary, ensuring data integrity.
-	 * 
-	 * @param word The word associated with the record to add.
-	 * @param type The type of the record to add.
-	 * @param data The data of the new record.
-	 * @param dictionary The BSTDictionary to which the new record will be added.
-	 */
-	private static void add(String word, int type, String data, BSTDictionary dictionary) {
-	    try {
-	        Key key = new Key(word, type); // Create a new key for the record.
-	        
-	        if (dictionary.get(key) == null) {
-	            // If the key does not exist, proceed to add the new record.
-	            Record record = new Record(key, data);
-	            dictionary.put(record);
-	        } else {
-	            // If the key already exists, inform the user.
-	            System.out.println("Skipping addition: A record with the given key (" + word + "," + type + ") already exists in the dictionary.");
-	        }
-	    } catch (DictionaryException e) {
-	        // Display an error message if adding the record encounters issues.
-	        System.out.println("Error adding record: " + e.getMessage());
-	    }
-	}
-
-
     /**
-     * Lists all records from the ordered dictionary whose labels start with the specified prefix.
-     * This method iterates over the dictionary, beginning with the smallest record and proceeding to each
-     * successor, to find and print labels that match the given prefix. It ensures a comma-separated list
-     * without a trailing comma for a clean presentation.
+     * Saves the dictionary to a binary snapshot file, which can be given to the program as its input file
+     * or read back with the load command to restart without parsing the text input again.
      * 
-     * @param prefix The prefix to search for among the record labels.
-     * @param dictionary The BSTDictionary instance containing the records to be searched.
+     * @param fileName The snapshot file to write.
+     * @param dictionary The BSTDictionary instance to save.
      */
-    private static void list(String prefix, BSTDictionary dictionary) {
-        StringBuilder output = new StringBuilder(); // StringBuilder to construct the output string efficiently.
-        boolean found = false; // Flag to track if any matching records have been found.
-
-        // Begin with the smallest record in the dictionary for an ordered traversal.
-        Record curr = dictionary.smallest();
-        
-        // Iterate through the dictionary to find all records that start with the given prefix.
-        while (curr != null) {
-            // Check if the current record's label starts with the prefix.
-            if (curr.getKey().getLabel().startsWith(prefix)) {
-                // If it's not the first match, append a comma for separation.
-                if (found) {
-                    output.append(", ");
-                }
-                // Append the label of the current record to the output.
-                output.append(curr.getKey().getLabel());
-                found = true; // Indicate that at least one matching record has been found.
-            }
-            // Move to the next record in order, ensuring an alphabetical listing.
-            curr = dictionary.successor(curr.getKey());
-        }
-        
-        // If any records were found, print the comma-separated list of labels.
-        if (found) {
-            System.out.println(output.toString());
-        } else {
-            // If no matching records were found, print a message indicating so.
-            System.out.println("No label attributes in the dictionary start with prefix " + prefix);
+    private static void save(String fileName, BSTDictionary dictionary) {
+        try {
+            DictionarySnapshot.save(dictionary, Paths.get(fileName));
+        } catch (IOException e) {
+            // The snapshot could not be written - display an error message.
+            System.out.println("Error saving snapshot: " + e.getMessage());
         }
     }
 
     /**
-     * Retrieves and displays the first (smallest key) record in the ordered dictionary.
-     * This method finds the record with the smallest key based on the dictionary's ordering criteria
-     * and prints its details, including the label, type, and associated data.
+     * Replaces the contents of the dictionary with the records of a binary snapshot file.
+     * If there is a log, the records are first written as its checkpoint, so the dictionary and what a restart
+     * recovers always agree. The dictionary is left unchanged if the snapshot cannot be read or the checkpoint
+     * cannot be written.
      * 
-     * @param dictionary The BSTDictionary instance from which to retrieve the first record.
+     * @param fileName The snapshot file to read.
+     * @param dictionary The BSTDictionary instance to fill.
      */
-    private static void first(BSTDictionary dictionary) {
-        // Retrieve the record with the smallest key in the dictionary.
-        Record small = dictionary.smallest();
-
-        // Print the details of the smallest record: label, type, and data.
-        System.out.println(small.getKey().getLabel() + "," + small.getKey().getType() + "," + small.getDataItem());
-    }
-
-    /**
-     * Retrieves and displays the last (largest key) record in the ordered dictionary.
-     * This method finds the record with the largest key based on the dictionary's ordering criteria
-     * and prints its details, including the label, type, and associated data.
-     * 
-     * @param dictionary The BSTDictionary instance from which to retrieve the last record.
-     */
-    private static void last(BSTDictionary dictionary) {
-        // Retrieve the record with the largest key in the dictionary.
-        Record large = dictionary.largest();
-
-        // Print the details of the largest record: label, type, and data.
-        System.out.println(large.getKey().getLabel() + "," + large.getKey().getType() + "," + large.getDataItem());
+    private static void load(String fileName, BSTDictionary dictionary) {
+        Record[] records;
+        try {
+            records = DictionarySnapshot.read(Paths.get(fileName));
+        } catch (IOException e) {
+            // The snapshot could not be read - display an error message.
+            System.out.println("Error loading snapshot: " + e.getMessage());
+            return;
+        }
+        if (log != null) {
+            try {
+                log.checkpoint(Arrays.asList(records)); // The log no longer applies to the new contents.
+            } catch (IOException e) {
+                System.out.println("Error writing checkpoint: " + e.getMessage() + ". The snapshot was not loaded.");
+                return;
+            }
+        }
+        dictionary.clear();
+        dictionary.load(records);
     }
 
-}
\ No newline at end of file
+}
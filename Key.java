@@ -1,6 +1,8 @@
 /**
  * This class represents the key of the data items stored in the internal nodes of the binary search tree implementing the ordered dictionary. 
  * Each object of this class will have two instance variables: label and type.
+ * The first eight characters of the label are also packed into a long when they all fit in a byte, so that most
+ * comparisons are decided by one unsigned long comparison; the full labels are compared only when the prefixes tie.
  * 
  * @author Ivory Huo 
  */
@@ -11,6 +13,11 @@ public class Key implements Comparable<Key> {
     private String label;
     private int type;
 
+    // First eight characters of the label, one per byte, padded with zero bytes; valid only if packed is true
+    private long prefix;
+    // True if the first eight characters of the label are all between 1 and 255
+    private boolean packed;
+
     /**
      * Constructs a new Key object with the specified label and type
      * 
@@ -19,8 +26,62 @@ public class Key implements Comparable<Key> {
      */
     public Key(String theLabel, int theType) {
         // Convert theLabel to lower case before storing it in instance variable label
-        this.label = theLabel.toLowerCase();
+        this.label = toLowerCase(theLabel);
         this.type = theType;
+        packPrefix();
+    }
+
+    /**
+     * Constructs an empty Key whose fields are set by fromLowerCase
+     */
+    private Key() {
+    }
+
+    /**
+     * Packs the first eight characters of the label into prefix, or clears packed if they do not fit
+     */
+    private void packPrefix() {
+        this.packed = true;
+        int length = Math.min(8, label.length());
+        for (int i = 0; i < length; i++) {
+            char c = label.charAt(i);
+            if (c == 0 || c > 0xFF) {
+                this.packed = false; // Does not fit in a byte, or could not be told apart from the padding
+                break;
+            }
+            this.prefix |= (long) c << (8 * (7 - i));
+        }
+    }
+
+    /**
+     * Converts a label to lower case; a label that is already lower-case ASCII is returned as is
+     * 
+     * @param theLabel: the label to convert
+     * @return the label in lower case
+     */
+    private static String toLowerCase(String theLabel) {
+        for (int i = 0; i < theLabel.length(); i++) {
+            char c = theLabel.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) {
+                return theLabel.toLowerCase(); // Something to convert, or not ASCII
+            }
+        }
+        return theLabel;
+    }
+
+    /**
+     * Returns a Key for a label that is already in lower case, without converting it a second time
+     * 
+     * @param lowerLabel: the label of the Key, in lower case
+     * @param theType: the type of the Key
+     * @return the new Key
+     */
+    public static Key fromLowerCase(String lowerLabel, int theType) {
+        Key k = new Key();
+        k.label = lowerLabel;
+        k.type = theType;
+        k.packPrefix();
+        return k;
     }
 
     /**
@@ -41,6 +102,25 @@ public class Key implements Comparable<Key> {
         return type;
     }
 
+    /**
+     * Returns true if the first eight characters of the label are packed into getPrefix
+     * 
+     * @return true if the prefix can be used for comparisons
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * Returns the first eight characters of the label, one per byte, padded with zero bytes
+     * Two packed prefixes order their labels whenever they differ, when compared as unsigned longs.
+     * 
+     * @return the packed prefix, valid only if isPacked returns true
+     */
+    public long getPrefix() {
+        return prefix;
+    }
+
     /**
      * Compares this Key object with another Key
      * 
@@ -49,6 +129,17 @@ public class Key implements Comparable<Key> {
      */
     @Override
     public int compareTo(Key k) {
+        if (this.packed && k.packed) {
+            // The packed prefixes order the labels whenever they differ
+            if (this.prefix != k.prefix) {
+                return Long.compareUnsigned(this.prefix, k.prefix) < 0 ? -1 : 1;
+            }
+            // Equal prefixes of labels no longer than eight characters mean equal labels
+            if (this.label.length() <= 8 && k.label.length() <= 8) {
+                return this.type == k.type ? 0 : (this.type < k.type ? -1 : 1);
+            }
+        }
+
         // Compare labels first
         int labelComparison = this.label.compareTo(k.label);
         
@@ -65,5 +156,47 @@ public class Key implements Comparable<Key> {
         }
     }
 
-}
+    /**
+     * Returns true if o is a Key with the same label and type as this one
+     * 
+     * @param o: the object to compare with
+     * @return true if compareTo would return 0
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Key)) {
+            return false;
+        }
+        Key k = (Key) o;
+        return type == k.type && label.equals(k.label);
+    }
+
+    /**
+     * Returns a hash code consistent with equals
+     * 
+     * @return the hash code of this Key
+     */
+    @Override
+    public int hashCode() {
+        return 31 * label.hashCode() + type;
+    }
 
+    /**
+     * Returns a 64-bit hash of the label and type, for uses that need more than the 32 bits of hashCode
+     * The packed prefix stands for the first eight characters, so only the characters after it are hashed one by one.
+     * 
+     * @return the 64-bit hash of this Key
+     */
+    public long longHash() {
+        long h = packed ? prefix : 0x9E3779B97F4A7C15L;
+        for (int i = packed ? 8 : 0; i < label.length(); i++) {
+            h = (h ^ label.charAt(i)) * 0x100000001B3L; // FNV-1a step over 64 bits
+            h ^= h >>> 29;
+        }
+        return h ^ (type * 0xC2B2AE3D27D4EB4FL);
+    }
+
+}
@@ -0,0 +1,318 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Supplier;
+
+/**
+ * This class is a stress check for the thread-safe dictionaries (ConcurrentBSTDictionary, SkipListDictionary and
+ * PersistentDictionary). In each round a few threads run random put, remove, get, successor, predecessor and smallest
+ * calls on a handful of keys and record when every call started and returned, while another thread keeps inserting
+ * and removing the keys above them so that the tree is rebalanced under the readers. The checked keys are the
+ * smallest in the dictionary, so smallest, and the successor and predecessor of a checked key, are determined by
+ * which checked keys are present, or else fall among the background keys. The recorded history of a round is then
+ * checked against a sequential model of the checked records: there must be an order of the calls, consistent with
+ * their real-time order, in which every call returns what it returned.
+ *
+ * Usage: java LinearizabilityCheck [rounds]
+ * Prints one line per dictionary, or the first history that has no such order and exits with status 1.
+ *
+ * @author Ivory Huo
+ */
+
+public class LinearizabilityCheck {
+
+    private static final int THREADS = 4;
+    private static final int OPS_PER_THREAD = 16; // A round has at most 64 calls, so a set of calls fits in a long
+    private static final int KEYS = 3;
+    private static final int BACKGROUND_KEYS = 4096;
+
+    private static final int GET = 0;
+    private static final int PUT = 1;
+    private static final int REMOVE = 2;
+    private static final int SUCCESSOR = 3;
+    private static final int PREDECESSOR = 4;
+    private static final int SMALLEST = 5;
+
+    // Result of a navigation call that returned a background record
+    private static final String BACKGROUND = "background";
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        boolean ok = check("ConcurrentBSTDictionary", ConcurrentBSTDictionary::new, rounds)
+                && check("SkipListDictionary", SkipListDictionary::new, rounds)
+                && check("PersistentDictionary", PersistentDictionary::new, rounds);
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Runs the rounds on a new dictionary and checks every history
+     *
+     * @return true if every history was linearizable
+     */
+    private static boolean check(String name, Supplier<BSTDictionaryADT> factory, int rounds) throws Exception {
+        BSTDictionaryADT dictionary = factory.get();
+        Key[] keys = new Key[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = new Key("a" + i, 1);
+        }
+        // The checked keys sit below the background keys, whose churn rotates the subtrees around them
+        for (int i = 0; i < BACKGROUND_KEYS; i++) {
+            dictionary.putIfAbsent(new Record(new Key(background(i), 1), "b"));
+        }
+
+        List<List<Op>> histories = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            histories.add(new ArrayList<>());
+        }
+        CyclicBarrier start = new CyclicBarrier(THREADS + 1);
+        CyclicBarrier end = new CyclicBarrier(THREADS + 1);
+        Thread[] workers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> work(dictionary, keys, thread, histories.get(thread), start, end, rounds));
+            workers[t].setDaemon(true);
+            workers[t].start();
+        }
+        Thread churn = new Thread(() -> churn(dictionary));
+        churn.setDaemon(true);
+        churn.start();
+
+        long started = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            start.await();
+            end.await();
+            List<Op> history = new ArrayList<>();
+            for (List<Op> h : histories) {
+                history.addAll(h);
+            }
+            if (!linearizable(history)) {
+                churn.interrupt();
+                System.out.println(name + ": history of round " + round + " is not linearizable");
+                history.sort(Comparator.comparingLong(op -> op.invoked));
+                for (Op op : history) {
+                    System.out.println("  " + op);
+                }
+                return false;
+            }
+            // Every round starts with the checked keys absent
+            for (Key k : keys) {
+                dictionary.tryRemove(k);
+            }
+        }
+        churn.interrupt();
+        churn.join();
+        System.out.printf("%s: %d rounds, %d calls, all linearizable (%.1f s)%n", name, rounds,
+                (long) rounds * THREADS * OPS_PER_THREAD, (System.nanoTime() - started) / 1e9);
+        return true;
+    }
+
+    private static String background(int i) {
+        return "k" + i;
+    }
+
+    /**
+     * Runs the calls of one thread, round after round, recording each into history
+     */
+    private static void work(BSTDictionaryADT dictionary, Key[] keys, int thread, List<Op> history,
+                             CyclicBarrier start, CyclicBarrier end, int rounds) {
+        Random random = new Random(thread);
+        int sequence = 0;
+        try {
+            for (int round = 0; round < rounds; round++) {
+                start.await();
+                history.clear(); // The main thread is done with the last round's calls once the round starts
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    int index = random.nextInt(KEYS);
+                    Key k = keys[index];
+                    int choice = random.nextInt(10);
+                    Op op;
+                    if (choice < 3) {
+                        op = new Op(index, GET, null);
+                        op.invoked = System.nanoTime();
+                        Record r = dictionary.get(k);
+                        op.result = r != null ? r.getDataItem() : null;
+                    } else if (choice < 7) {
+                        op = new Op(index, choice == 3 ? SUCCESSOR : choice == 4 ? PREDECESSOR : SMALLEST, null);
+                        op.invoked = System.nanoTime();
+                        Record r = op.kind == SUCCESSOR ? dictionary.successor(k)
+                                : op.kind == PREDECESSOR ? dictionary.predecessor(k) : dictionary.smallest();
+                        op.result = describe(r, keys);
+                    } else if (choice < 9) {
+                        op = new Op(index, PUT, thread + "." + sequence++); // Every value written is different
+                        op.invoked = System.nanoTime();
+                        try {
+                            dictionary.put(new Record(k, op.argument));
+                            op.succeeded = true;
+                        } catch (DictionaryException e) {
+                            op.succeeded = false;
+                        }
+                    } else {
+                        op = new Op(index, REMOVE, null);
+                        op.invoked = System.nanoTime();
+                        try {
+                            dictionary.remove(k);
+                            op.succeeded = true;
+                        } catch (DictionaryException e) {
+                            op.succeeded = false;
+                        }
+                    }
+                    op.returned = System.nanoTime();
+                    history.add(op);
+                }
+                end.await();
+            }
+        } catch (InterruptedException | BrokenBarrierException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Returns what a navigation call returned: the index and data of a checked record, BACKGROUND, or null
+     */
+    private static String describe(Record r, Key[] keys) {
+        if (r == null) {
+            return null;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (r.getKey().equals(keys[i])) {
+                return i + "=" + r.getDataItem();
+            }
+        }
+        return BACKGROUND;
+    }
+
+    /**
+     * Inserts and removes background keys until interrupted
+     */
+    private static void churn(BSTDictionaryADT dictionary) {
+        Random random = new Random(-1);
+        while (!Thread.currentThread().isInterrupted()) {
+            Key k = new Key(background(random.nextInt(BACKGROUND_KEYS)), 1);
+            if (!dictionary.tryRemove(k)) {
+                dictionary.putIfAbsent(new Record(k, "b"));
+            }
+        }
+    }
+
+    /**
+     * Returns true if the calls, starting from absent checked records, can be ordered consistently with real time
+     * and with what each call returned (the Wing and Gong search, remembering the states already tried)
+     */
+    static boolean linearizable(List<Op> ops) {
+        return search(ops, 0L, new String[KEYS], new HashSet<>());
+    }
+
+    private static boolean search(List<Op> ops, long done, String[] state, Set<String> tried) {
+        int n = ops.size();
+        if (done == (n == 64 ? -1L : (1L << n) - 1)) {
+            return true;
+        }
+        if (!tried.add(done + ":" + Arrays.toString(state))) {
+            return false;
+        }
+        // A call can take effect next only if it started before every pending call returned
+        long firstReturn = Long.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            if ((done & (1L << i)) == 0) {
+                firstReturn = Math.min(firstReturn, ops.get(i).returned);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Op op = ops.get(i);
+            if ((done & (1L << i)) == 0 && op.invoked <= firstReturn) {
+                String[] next = apply(op, state);
+                if (next != null && search(ops, done | (1L << i), next, tried)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the data of the checked records after the call, or null if the call cannot have returned what it did
+     * when they held state (null for an absent record)
+     */
+    private static String[] apply(Op op, String[] state) {
+        String current = state[op.key];
+        switch (op.kind) {
+            case GET:
+                return Objects.equals(op.result, current) ? state : null;
+            case PUT:
+                if (op.succeeded != (current == null)) {
+                    return null;
+                }
+                return op.succeeded ? with(state, op.key, op.argument) : state;
+            case REMOVE:
+                if (op.succeeded != (current != null)) {
+                    return null;
+                }
+                return op.succeeded ? with(state, op.key, null) : state;
+            case SUCCESSOR:
+                return Objects.equals(op.result, nearest(state, op.key + 1, 1, BACKGROUND)) ? state : null;
+            case PREDECESSOR:
+                return Objects.equals(op.result, nearest(state, op.key - 1, -1, null)) ? state : null;
+            default:
+                return Objects.equals(op.result, nearest(state, 0, 1, BACKGROUND)) ? state : null;
+        }
+    }
+
+    /**
+     * Returns the first present checked record from index from in the given direction, as describe would report it,
+     * or otherwise what lies beyond the checked keys
+     */
+    private static String nearest(String[] state, int from, int step, String beyond) {
+        for (int i = from; i >= 0 && i < state.length; i += step) {
+            if (state[i] != null) {
+                return i + "=" + state[i];
+            }
+        }
+        return beyond;
+    }
+
+    private static String[] with(String[] state, int index, String data) {
+        String[] next = state.clone();
+        next[index] = data;
+        return next;
+    }
+
+    /**
+     * One recorded call: the index of its key, its kind and argument, what it returned, and when it started and returned
+     */
+    static final class Op {
+        final int key;
+        final int kind;
+        final String argument;
+        String result;
+        boolean succeeded;
+        long invoked;
+        long returned;
+
+        Op(int key, int kind, String argument) {
+            this.key = key;
+            this.kind = kind;
+            this.argument = argument;
+        }
+
+        @Override
+        public String toString() {
+            String call;
+            if (kind == PUT || kind == REMOVE) {
+                call = (kind == PUT ? "put(a" + key + ", " + argument + ")" : "remove(a" + key + ")")
+                        + (succeeded ? " ok" : " failed");
+            } else {
+                String[] names = {"get(a" + key + ")", null, null, "successor(a" + key + ")",
+                        "predecessor(a" + key + ")", "smallest()"};
+                call = names[kind] + " = " + result;
+            }
+            return "[" + invoked + ", " + returned + "] " + call;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class warms up the media caches from the contents of a dictionary.
+ * It walks the media records (types 3 to 8) of a dictionary in key order, checks that each file exists, and decodes
+ * sound files, image files and web pages into the SoundPlayer, PictureViewer and ShowHTML caches until a byte budget is used up. The files are handled
+ * by a fixed number of threads, and the walk reports which files are missing or cannot be decoded, so that
+ * broken records are found when the dictionary is loaded rather than when they are first requested.
+ * Decoding can take seconds (MIDI files are rendered to PCM), so a caller that must not wait can check the
+ * files with check and run prefetch in the background.
+ *
+ * @author Ivory Huo
+ */
+
+public class MediaPrefetcher {
+
+    private final int concurrency;
+    private final long byteBudget;
+
+    /**
+     * Creates a prefetcher
+     *
+     * @param concurrency: number of files handled at the same time, at least 1
+     * @param byteBudget: most bytes of decoded media to load into the caches; files are still checked after that
+     * @throws IllegalArgumentException if concurrency is smaller than 1
+     */
+    public MediaPrefetcher(int concurrency, long byteBudget) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Returns the media records whose file does not exist, in the order given, without decoding anything
+     *
+     * @param records: the records to walk, such as a dictionary in key order; records of other types are skipped
+     * @return the records with missing files
+     */
+    public List<Record> check(Iterable<Record> records) {
+        List<Record> missing = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Record r : records) {
+            if (isMedia(r) && seen.add(r.getDataItem()) && !new File(r.getDataItem()).isFile()) {
+                missing.add(r);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Checks and warms every media file referenced by the records, and waits until all of them are done
+     * Each file is handled once, for the first record that refers to it.
+     *
+     * @param records: the records to walk, such as a dictionary in key order; records of other types are skipped
+     * @return what was warmed, and which records refer to missing or unreadable files
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public Result prefetch(Iterable<Record> records) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "media-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicLong remaining = new AtomicLong(byteBudget);
+        List<Record> media = new ArrayList<>();
+        List<Future<Status>> statuses = new ArrayList<>();
+        try {
+            Set<String> seen = new HashSet<>();
+            for (Record r : records) {
+                if (isMedia(r) && seen.add(r.getDataItem())) {
+                    media.add(r);
+                    statuses.add(pool.submit(() -> warm(r, remaining)));
+                }
+            }
+
+            Result result = new Result();
+            for (int i = 0; i < media.size(); i++) {
+                Status status;
+                try {
+                    status = statuses.get(i).get();
+                } catch (ExecutionException e) {
+                    status = Status.UNREADABLE;
+                }
+                if (status == Status.MISSING) {
+                    result.missing.add(media.get(i));
+                } else if (status == Status.UNREADABLE) {
+                    result.unreadable.add(media.get(i));
+                } else if (status == Status.WARMED) {
+                    result.warmed++;
+                }
+            }
+            result.bytes = byteBudget - remaining.get();
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks the file of one media record and, while the budget lasts, decodes it into the matching cache
+     * The budget is checked before decoding, so it may be exceeded by the files being decoded at that moment.
+     */
+    private static Status warm(Record r, AtomicLong remaining) {
+        String fileName = r.getDataItem();
+        if (!new File(fileName).isFile()) {
+            return Status.MISSING;
+        }
+        if (remaining.get() <= 0) {
+            return Status.CHECKED;
+        }
+        try {
+            long bytes;
+            switch (r.getKey().getType()) {
+                case 3:
+                case 4:
+                case 5:
+                    bytes = SoundPlayer.preload(fileName);
+                    break;
+                case 6:
+                case 7:
+                    bytes = PictureViewer.preload(fileName);
+                    break;
+                default:
+                    bytes = ShowHTML.preload(fileName);
+                    break;
+            }
+            remaining.addAndGet(-bytes);
+            return Status.WARMED;
+        } catch (MultimediaException e) {
+            return Status.UNREADABLE;
+        }
+    }
+
+    private static boolean isMedia(Record r) {
+        int type = r.getKey().getType();
+        return type >= 3 && type <= 8;
+    }
+
+    private enum Status { MISSING, UNREADABLE, CHECKED, WARMED }
+
+    /**
+     * Outcome of a prefetch
+     */
+    public static final class Result {
+        private final List<Record> missing = new ArrayList<>();
+        private final List<Record> unreadable = new ArrayList<>();
+        private int warmed;
+        private long bytes;
+
+        /**
+         * Returns the records whose file does not exist, in the order walked
+         *
+         * @return the records with missing files
+         */
+        public List<Record> getMissing() {
+            return missing;
+        }
+
+        /**
+         * Returns the records whose file exists but could not be decoded, in the order walked
+         *
+         * @return the records with unreadable files
+         */
+        public List<Record> getUnreadable() {
+            return unreadable;
+        }
+
+        /**
+         * Returns the number of files decoded into the caches
+         *
+         * @return the number of warmed files
+         */
+        public int getWarmed() {
+            return warmed;
+        }
+
+        /**
+         * Returns the number of decoded bytes loaded into the caches
+         *
+         * @return the number of warmed bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,560 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * This class implements an ordered dictionary as a persistent (immutable) AVL tree.
+ * Nodes are never modified: put and remove copy only the nodes on the path from the root to the change,
+ * share every untouched subtree with the previous version, and publish the new root atomically.
+ * A reader works on whichever root it read first, so it never blocks and always sees a consistent
+ * point-in-time view; snapshot() freezes such a view in O(1). Writers retry if another writer published
+ * a new root in the meantime. Cursors, and so range and prefix scans, walk the version that was current when they
+ * were created with a stack of the nodes above their position, in amortized O(1) per record.
+ *
+ * @author Ivory Huo
+ */
+
+public class PersistentDictionary implements BSTDictionaryADT {
+
+    private final AtomicReference<Node> root;
+    private final boolean frozen;
+
+    /**
+     * Creates an empty dictionary
+     */
+    public PersistentDictionary() {
+        this(null, false);
+    }
+
+    /**
+     * Creates a dictionary starting from the given version of the tree
+     *
+     * @param root: root of the tree, or null for an empty dictionary
+     * @param frozen: true for a read-only snapshot
+     */
+    private PersistentDictionary(Node root, boolean frozen) {
+        this.root = new AtomicReference<>(root);
+        this.frozen = frozen;
+    }
+
+    /**
+     * Returns a read-only view of the dictionary as it is now; later changes to this dictionary do not affect it
+     * Taking a snapshot costs O(1), since the view shares all of its nodes with the current version.
+     *
+     * @return the frozen view
+     */
+    public PersistentDictionary snapshot() {
+        return frozen ? this : new PersistentDictionary(root.get(), true);
+    }
+
+    /**
+     * Returns the Record with key k, or null if the Record is not in the dictionary
+     *
+     * @param k: key of the record to retrieve
+     * @return The Record associated with the key if it exists, otherwise null
+     */
+    @Override
+    public Record get(Key k) {
+        return find(root.get(), k);
+    }
+
+    /**
+     * Inserts d into the ordered dictionary by publishing a new version of the tree.
+     *
+     * @param d: record to insert into the dictionary
+     * @throws DictionaryException if a record with the same key already exists in the dictionary
+     * @throws UnsupportedOperationException if this dictionary is a snapshot
+     */
+    @Override
+    public void put(Record d) throws DictionaryException {
+        checkWritable();
+        while (true) {
+            Node current = root.get();
+            Node updated = insert(current, d);
+            if (root.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the Record with Key k from the dictionary by publishing a new version of the tree.
+     *
+     * @param k: key of the record to remove
+     * @throws DictionaryException if the record is not found in the dictionary
+     * @throws UnsupportedOperationException if this dictionary is a snapshot
+     */
+    @Override
+    public void remove(Key k) throws DictionaryException {
+        checkWritable();
+        while (true) {
+            Node current = root.get();
+            Node updated = delete(current, k);
+            if (root.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Atomically inserts d unless a Record with the same Key is already in the dictionary
+     *
+     * @param d: record to insert into the dictionary
+     * @return The record already stored with the key of d, or null if d was inserted
+     * @throws UnsupportedOperationException if this dictionary is a snapshot
+     */
+    @Override
+    public Record putIfAbsent(Record d) {
+        checkWritable();
+        while (true) {
+            Node current = root.get();
+            Record existing = find(current, d.getKey());
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                if (root.compareAndSet(current, insert(current, d))) {
+                    return null;
+                }
+            } catch (DictionaryException e) {
+                // Not reached: this version was just checked not to hold the key
+            }
+        }
+    }
+
+    /**
+     * Atomically computes new data for the Key k from its current data, publishing a new version of the tree
+     * The function may be called more than once if another writer publishes a version first.
+     *
+     * @param k: key of the record to compute
+     * @param remapping: function from the key and its current data (or null) to the new data (or null to remove)
+     * @return The record now stored with key k, or null if there is none
+     * @throws UnsupportedOperationException if this dictionary is a snapshot
+     */
+    @Override
+    public Record compute(Key k, BiFunction<Key, String, String> remapping) {
+        checkWritable();
+        while (true) {
+            Node current = root.get();
+            Record existing = find(current, k);
+            String data = remapping.apply(k, existing != null ? existing.getDataItem() : null);
+            Record updated = data != null ? new Record(existing != null ? existing.getKey() : k, data) : null;
+            Node version = current;
+            try {
+                if (existing != null) {
+                    version = delete(version, k);
+                }
+                if (updated != null) {
+                    version = insert(version, updated);
+                }
+            } catch (DictionaryException e) {
+                // Not reached: this version was just checked for the key
+            }
+            if (version == current || root.compareAndSet(current, version)) {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * Atomically removes the Record with Key k if it is in the dictionary
+     *
+     * @param k: key of the record to remove
+     * @return true if the record was removed, false if it was not in the dictionary
+     * @throws UnsupportedOperationException if this dictionary is a snapshot
+     */
+    @Override
+    public boolean tryRemove(Key k) {
+        checkWritable();
+        while (true) {
+            Node current = root.get();
+            if (find(current, k) == null) {
+                return false;
+            }
+            try {
+                if (root.compareAndSet(current, delete(current, k))) {
+                    return true;
+                }
+            } catch (DictionaryException e) {
+                // Not reached: this version was just checked to hold the key
+            }
+        }
+    }
+
+    /**
+     * Adds many records at once by publishing a tree of minimum height built from the current records and the new
+     * ones, in linear time for sorted input
+     *
+     * @param records: records to add, in any order
+     * @return The records that were not added because of a duplicate key, in key order
+     * @throws UnsupportedOperationException if this dictionary is a snapshot
+     */
+    @Override
+    public List<Record> load(Record[] records) {
+        checkWritable();
+        while (true) {
+            Node current = root.get();
+            List<Record> existing = new ArrayList<>();
+            for (StackCursor cursor = new StackCursor(current, null); cursor.hasNext(); ) {
+                existing.add(cursor.next());
+            }
+            List<Record> duplicates = new ArrayList<>();
+            Record[] merged = BinarySearchTree.mergeSorted(existing, records, duplicates);
+            if (root.compareAndSet(current, build(merged, 0, merged.length - 1))) {
+                return duplicates;
+            }
+        }
+    }
+
+    /**
+     * Returns the successor of k; the given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to find the successor for
+     * @return The successor record, or null if no successor exists.
+     */
+    @Override
+    public Record successor(Key k) {
+        return higher(k);
+    }
+
+    /**
+     * Returns the predecessor of k; the given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to find the predecessor for
+     * @return The predecessor record, or null if no predecessor exists
+     */
+    @Override
+    public Record predecessor(Key k) {
+        return lower(k);
+    }
+
+    /**
+     * Returns the Record with the largest key smaller than or equal to k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record floor(Key k) {
+        return descend(k, true, true);
+    }
+
+    /**
+     * Returns the Record with the smallest key larger than or equal to k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record ceiling(Key k) {
+        return descend(k, false, true);
+    }
+
+    /**
+     * Returns the Record with the largest key strictly smaller than k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record lower(Key k) {
+        return descend(k, true, false);
+    }
+
+    /**
+     * Returns the Record with the smallest key strictly larger than k, found in a single descent
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record higher(Key k) {
+        return descend(k, false, false);
+    }
+
+    /**
+     * Returns the Record with smallest key in the ordered dictionary. Returns null if the dictionary is empty.
+     *
+     * @return The record with the smallest key, or null if the dictionary is empty.
+     */
+    @Override
+    public Record smallest() {
+        Node current = root.get();
+        if (current == null) {
+            return null;
+        }
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current.record;
+    }
+
+    /**
+     * Returns the Record with largest key in the ordered dictionary. Returns null if the dictionary is empty
+     *
+     * @return The record with the largest key, or null if the dictionary is empty
+     */
+    @Override
+    public Record largest() {
+        Node current = root.get();
+        if (current == null) {
+            return null;
+        }
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current.record;
+    }
+
+    /**
+     * Returns a cursor over a snapshot taken now, so a scan is never affected by concurrent changes
+     *
+     * @return a cursor positioned before the smallest record of the snapshot
+     */
+    @Override
+    public DictionaryCursor cursor() {
+        return new StackCursor(root.get(), null);
+    }
+
+    /**
+     * Returns a cursor over a snapshot taken now, positioned before the smallest record whose key is not smaller than from
+     *
+     * @param from: lower bound of the records returned by the cursor
+     * @return a cursor whose next() returns the first record with key >= from
+     */
+    @Override
+    public DictionaryCursor cursor(Key from) {
+        return new StackCursor(root.get(), from);
+    }
+
+    /**
+     * Single descent for floor (below, inclusive), ceiling (above, inclusive), lower and higher
+     */
+    private Record descend(Key k, boolean below, boolean inclusive) {
+        return descend(root.get(), k, below, inclusive);
+    }
+
+    /**
+     * Single descent in the given version of the tree
+     */
+    private static Record descend(Node node, Key k, boolean below, boolean inclusive) {
+        Node current = node;
+        Record candidate = null;
+        while (current != null) {
+            int comparison = k.compareTo(current.record.getKey());
+            if (comparison == 0 && inclusive) {
+                return current.record;
+            }
+            if (below ? comparison > 0 : comparison < 0) {
+                candidate = current.record;
+            }
+            current = comparison < 0 || (comparison == 0 && below) ? current.left : current.right;
+        }
+        return candidate;
+    }
+
+    /**
+     * Returns the record with key k in the given version of the tree, or null
+     */
+    private static Record find(Node node, Key k) {
+        Node current = node;
+        while (current != null) {
+            int comparison = k.compareTo(current.record.getKey());
+            if (comparison == 0) {
+                return current.record;
+            }
+            current = comparison < 0 ? current.left : current.right;
+        }
+        return null;
+    }
+
+    private void checkWritable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+    }
+
+    /**
+     * Returns a new version of the subtree with d inserted, copying only the nodes on the path to it
+     */
+    private static Node insert(Node node, Record d) throws DictionaryException {
+        if (node == null) {
+            return new Node(d, null, null);
+        }
+        int comparison = d.getKey().compareTo(node.record.getKey());
+        if (comparison == 0) {
+            throw new DictionaryException("Record with the same Key already exists.", true);
+        } else if (comparison < 0) {
+            return balance(node.record, insert(node.left, d), node.right);
+        } else {
+            return balance(node.record, node.left, insert(node.right, d));
+        }
+    }
+
+    /**
+     * Returns a new version of the subtree without key k, copying only the nodes on the path to it
+     */
+    private static Node delete(Node node, Key k) throws DictionaryException {
+        if (node == null) {
+            throw new DictionaryException("Record not in the dictionary.", true);
+        }
+        int comparison = k.compareTo(node.record.getKey());
+        if (comparison < 0) {
+            return balance(node.record, delete(node.left, k), node.right);
+        } else if (comparison > 0) {
+            return balance(node.record, node.left, delete(node.right, k));
+        }
+        if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        }
+        // Two children: the smallest record of the right subtree takes the place of the removed one
+        Node smallest = node.right;
+        while (smallest.left != null) {
+            smallest = smallest.left;
+        }
+        return balance(smallest.record, node.left, deleteSmallest(node.right));
+    }
+
+    /**
+     * Returns a new version of the subtree without its smallest record
+     */
+    private static Node deleteSmallest(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.record, deleteSmallest(node.left), node.right);
+    }
+
+    /**
+     * Builds a node from the given parts, rotating (with new nodes) if the AVL property would not hold
+     */
+    private static Node balance(Record record, Node left, Node right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) >= height(left.right)) { // Left-left case
+                return new Node(left.record, left.left, new Node(record, left.right, right));
+            }
+            // Left-right case
+            Node pivot = left.right;
+            return new Node(pivot.record, new Node(left.record, left.left, pivot.left), new Node(record, pivot.right, right));
+        } else if (difference < -1) {
+            if (height(right.right) >= height(right.left)) { // Right-right case
+                return new Node(right.record, new Node(record, left, right.left), right.right);
+            }
+            // Right-left case
+            Node pivot = right.left;
+            return new Node(pivot.record, new Node(record, left, pivot.left), new Node(right.record, pivot.right, right.right));
+        }
+        return new Node(record, left, right);
+    }
+
+    /**
+     * Builds a tree of minimum height from sorted[lo..hi], using the middle record as the root
+     */
+    private static Node build(Record[] sorted, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        return new Node(sorted[mid], build(sorted, lo, mid - 1), build(sorted, mid + 1, hi));
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Immutable tree node
+     */
+    private static final class Node {
+        final Record record;
+        final Node left;
+        final Node right;
+        final int height;
+
+        Node(Record record, Node left, Node right) {
+            this.record = record;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+    }
+
+    /**
+     * Cursor over one version of the tree. It keeps the path of nodes whose records come after the cursor, nearest
+     * first, so next() moves in amortized O(1); previous() descends again, in O(log n). Nodes are immutable, so the
+     * version never changes under the cursor.
+     */
+    private static final class StackCursor implements DictionaryCursor {
+        private final Node root;
+        private final Node[] stack; // Nodes whose records come after the cursor, the next one on top
+        private int depth;
+        private Record before; // Record just before the cursor, or null
+
+        /**
+         * Creates a cursor positioned before the smallest record whose key is not smaller than from, or before the
+         * smallest record if from is null
+         */
+        StackCursor(Node root, Key from) {
+            this.root = root;
+            this.stack = new Node[height(root)];
+            seek(from);
+            before = from != null ? descend(root, from, true, false) : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public Record next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Node node = stack[--depth];
+            for (Node current = node.right; current != null; current = current.left) {
+                stack[depth++] = current; // The leftmost path of the right subtree comes next
+            }
+            before = node.record;
+            return before;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return before != null;
+        }
+
+        @Override
+        public Record previous() {
+            if (before == null) {
+                throw new NoSuchElementException();
+            }
+            Record after = before;
+            seek(after.getKey());
+            before = descend(root, after.getKey(), true, false);
+            return after;
+        }
+
+        /**
+         * Fills the stack with the path to the smallest record whose key is not smaller than from (or to the smallest
+         * record if from is null), keeping only the nodes whose records come at or after it
+         */
+        private void seek(Key from) {
+            depth = 0;
+            Node current = root;
+            while (current != null) {
+                if (from == null || from.compareTo(current.record.getKey()) <= 0) {
+                    stack[depth++] = current;
+                    current = current.left;
+                } else {
+                    current = current.right;
+                }
+            }
+        }
+    }
+}
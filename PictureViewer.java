@@ -1,26 +1,53 @@
-
 import java.awt.*;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import java.awt.BorderLayout;
 import javax.swing.JLabel;
 import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
 import java.io.*;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  *  This class includes methods for displaying the image in a window on
- *  the screen
+ *  the screen. Images are decoded by background threads into a cache shared by all viewers, bounded by
+ *  an estimate of their decoded size with least recently used eviction, so showing an image again skips
+ *  decoding. A viewer keeps its window and shows each new image in it; an image decoded after a later one
+ *  was asked for is not shown, so the window always ends up on the latest image.
  */
 
 public class PictureViewer extends JFrame {
 
 	private static final long serialVersionUID = 1L;
-	
+
+	// Most bytes of decoded images (4 bytes per pixel) kept in the cache
+	private static final long CACHE_BUDGET_BYTES = 128L * 1024 * 1024;
+
+	// Decoded images by absolute file name, least recently used first
+	private static final LinkedHashMap<String, CachedImage> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private static long cachedBytes;
+
+	private static final ExecutorService decoder = Executors.newFixedThreadPool(2, r -> {
+		Thread t = new Thread(r, "picture-decoder");
+		t.setDaemon(true);
+		return t;
+	});
+
 	JPanel contentPane;
     JLabel imageLabel = new JLabel();
     JLabel headerLabel = new JLabel();
 
+    // Number of show requests made to this viewer; only the image of the latest one is displayed
+    private final AtomicLong requests = new AtomicLong();
+
     /**
      * Constructor.
      */
@@ -28,31 +55,129 @@ public class PictureViewer extends JFrame {
 
    /**
      * Display the picture in a window on the screen.
+     * Returns right away: the image is decoded in the background unless it is cached, and the window is
+     * updated on the event dispatch thread.
+     * Returns a future that fails with a MultimediaException if the image cannot be decoded.
      */
-    public void show (String fileName) throws MultimediaException {
+    public CompletableFuture<Void> show (String fileName) throws MultimediaException {
+        File file = new File(fileName).getAbsoluteFile();
+        if (!file.isFile()) {
+            throw new MultimediaException ("Error opening image file "+fileName);
+        }
+        long request = requests.incrementAndGet();
+        CachedImage cached = cached(file);
+        if (cached != null) {
+            SwingUtilities.invokeLater(() -> display(request, fileName, cached.icon));
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> shown = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> decode(file), decoder).whenComplete((image, exception) -> {
+            if (exception != null) {
+                shown.completeExceptionally(new MultimediaException ("Error opening image file "+fileName));
+            } else {
+                SwingUtilities.invokeLater(() -> display(request, fileName, image.icon));
+                shown.complete(null);
+            }
+        });
+        return shown;
+    }
+
+    /**
+     * Decodes the image into the cache, unless it is already there, and returns its estimated decoded size in bytes.
+     */
+    public static long preload (String fileName) throws MultimediaException {
+        File file = new File(fileName).getAbsoluteFile();
+        CachedImage cached = cached(file);
+        if (cached != null) {
+            return cached.bytes;
+        }
         try {
+            return decode(file).bytes;
+        }
+        catch (UncheckedIOException exception) {
+            throw new MultimediaException ("Error opening image file "+fileName);
+        }
+    }
+
+    /**
+     * Shows the icon in this viewer's window, building the window the first time, unless a later request was made
+     * since; runs on the event dispatch thread
+     */
+    private void display (long request, String fileName, ImageIcon icon) {
+        if (request != requests.get()) {
+            return; // A later image was asked for, and is shown when it is ready
+        }
+        if (contentPane == null) {
             setDefaultCloseOperation(DISPOSE_ON_CLOSE);
             contentPane = (JPanel) getContentPane();
             contentPane.setLayout(new BorderLayout());
-            setTitle(fileName);
-
-            //ImageIcon imicon = new ImageIcon(this.getClass().getResource(fileName));
-            ImageIcon imicon = new ImageIcon(fileName);			
-            imageLabel.setIcon(imicon);
             contentPane.add(imageLabel, java.awt.BorderLayout.CENTER);
+        }
+        setTitle(fileName);
+        imageLabel.setIcon(icon);
+        this.pack();
+        this.setVisible(true);
+        this.toFront();
+    }
 
-	    this.pack();
-            this.setVisible(true);
+    /**
+     * Returns the cached image of the file, or null if it is not cached or the file changed since it was decoded
+     */
+    private static CachedImage cached (File file) {
+        synchronized (cache) {
+            CachedImage cached = cache.get(file.getPath());
+            return cached != null && cached.modified == file.lastModified() ? cached : null;
+        }
+    }
 
-	    /* System.out.print("Press RET to continue");
-	    BufferedReader keyboard =  new BufferedReader
-		                          (new InputStreamReader(System.in));
-					  String c = keyboard.readLine(); */
-	}
-        catch (Exception exception) {
-            throw new MultimediaException ("Error opening image file "+fileName);
+    /**
+     * Reads and decodes the file and adds it to the cache, evicting the least recently used images over the budget
+     * Animated images keep their animation, since the icon is built on the whole file.
+     */
+    private static CachedImage decode (File file) {
+        long modified = file.lastModified();
+        ImageIcon icon;
+        try {
+            icon = new ImageIcon(Files.readAllBytes(file.toPath())); // Waits until the image is decoded
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        // An animated image may report ABORTED once its first frame is ready, so only a missing size means failure
+        if ((icon.getImageLoadStatus() & MediaTracker.ERRORED) != 0 || icon.getIconWidth() <= 0) {
+            throw new UncheckedIOException(new IOException("Cannot decode " + file));
+        }
+        CachedImage image = new CachedImage(icon, 4L * icon.getIconWidth() * icon.getIconHeight(), modified);
+
+        synchronized (cache) {
+            CachedImage previous = cache.put(file.getPath(), image);
+            if (previous != null) {
+                cachedBytes -= previous.bytes;
+            }
+            cachedBytes += image.bytes;
+            // Evict the least recently used images, but never the one just added
+            Iterator<Map.Entry<String, CachedImage>> eldest = cache.entrySet().iterator();
+            while (cachedBytes > CACHE_BUDGET_BYTES && cache.size() > 1) {
+                CachedImage evicted = eldest.next().getValue();
+                eldest.remove();
+                cachedBytes -= evicted.bytes;
+            }
         }
+        return image;
+    }
 
-	//this.dispose();
+    /**
+     * Decoded image of a file, its estimated size and the modification time of the file it came from
+     */
+    private static final class CachedImage {
+        final ImageIcon icon;
+        final long bytes;
+        final long modified;
+
+        CachedImage(ImageIcon icon, long bytes, long modified) {
+            this.icon = icon;
+            this.bytes = bytes;
+            this.modified = modified;
+        }
     }
 }
@@ -0,0 +1,57 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * This class implements an iterator that returns records from an ordered traversal
+ * until the first record that falls outside the range, and stops there without looking further.
+ * 
+ * @author Ivory Huo
+ */
+
+public class RangeIterator implements Iterator<Record> {
+
+    private Iterator<Record> source;
+    private Predicate<Record> inRange;
+    private Record pending; // Next record to return, or null once the range is exhausted
+
+    /**
+     * Creates an iterator over the leading records of source that satisfy inRange
+     * 
+     * @param source: ordered traversal already positioned at the first record of the range
+     * @param inRange: test that holds for every record of the range and fails for the first one past it
+     */
+    public RangeIterator(Iterator<Record> source, Predicate<Record> inRange) {
+        this.source = source;
+        this.inRange = inRange;
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pending != null;
+    }
+
+    @Override
+    public Record next() {
+        if (pending == null) {
+            throw new NoSuchElementException();
+        }
+        Record result = pending;
+        advance();
+        return result;
+    }
+
+    /**
+     * Fetches the next record of the range, or clears pending if the range is exhausted
+     */
+    private void advance() {
+        pending = null;
+        if (source.hasNext()) {
+            Record candidate = source.next();
+            if (inRange.test(candidate)) {
+                pending = candidate;
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+import java.util.HashMap;
+
+/**
+ * This class implements a bounded cache of records, keyed on Key (the lowercase label and the type), with the
+ * W-TinyLFU policy. New entries go to a small LRU window; an entry evicted from the window is admitted to the
+ * main area only if it has been requested more often than the entry it would displace there. Request counts are
+ * kept approximately, for keys in and out of the cache, in a count-min sketch of 4-bit counters that are halved
+ * periodically so that old popularity fades. The main area is a segmented LRU: entries hit a second time move from
+ * the probation segment to the protected segment, which keeps the hot keys of a skewed workload cached even when
+ * long runs of one-time keys pass through.
+ *
+ * The cache is not thread-safe; it is meant to be used by a single-threaded dictionary such as BSTDictionary.
+ *
+ * @author Ivory Huo
+ */
+
+public class RecordCache {
+
+    // Share of the capacity given to the window, and share of the main area given to the protected segment
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    // Segments an entry can be in
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final int mainCapacity;
+
+    // Every cached entry is in the map and in the LRU list of its segment, least recently used first
+    private final HashMap<Key, Entry> entries;
+    private final Entry window = new Entry(null, null);
+    private final Entry probation = new Entry(null, null);
+    private final Entry protectedSegment = new Entry(null, null);
+    private int windowSize;
+    private int probationSize;
+    private int protectedSize;
+
+    private final FrequencySketch sketch;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates an empty cache holding at most capacity records
+     *
+     * @param capacity: maximum number of records kept, at least 1
+     * @throws IllegalArgumentException if capacity is smaller than 1
+     */
+    public RecordCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1");
+        }
+        this.windowCapacity = Math.max(1, (int) (capacity * WINDOW_SHARE));
+        this.mainCapacity = capacity - windowCapacity;
+        this.protectedCapacity = (int) (mainCapacity * PROTECTED_SHARE);
+        this.entries = new HashMap<>(capacity * 2);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * Returns the cached record with key k, or null if it is not cached; counts a hit or a miss
+     *
+     * @param k: key of the record
+     * @return The cached record, or null
+     */
+    public Record get(Key k) {
+        sketch.increment(k);
+        Entry e = entries.get(k);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        unlink(e);
+        if (e.segment == PROBATION) {
+            probationSize--;
+            promote(e); // Second hit in the main area
+        } else {
+            append(segmentList(e.segment), e); // Most recently used
+        }
+        return e.record;
+    }
+
+    /**
+     * Adds a record that was just read from the dictionary, after get(k) missed
+     *
+     * @param k: key of the record
+     * @param r: the record stored in the dictionary with key k
+     */
+    public void put(Key k, Record r) {
+        Entry e = new Entry(k, r);
+        if (entries.putIfAbsent(k, e) != null) {
+            return;
+        }
+        e.segment = WINDOW;
+        append(window, e);
+        if (++windowSize > windowCapacity) {
+            Entry candidate = window.next;
+            unlink(candidate);
+            windowSize--;
+            admit(candidate);
+        }
+    }
+
+    /**
+     * Removes the record with key k from the cache, if it is cached; must be called whenever that record changes
+     *
+     * @param k: key of the record
+     */
+    public void invalidate(Key k) {
+        Entry e = entries.remove(k);
+        if (e != null) {
+            unlink(e);
+            if (e.segment == WINDOW) {
+                windowSize--;
+            } else if (e.segment == PROBATION) {
+                probationSize--;
+            } else {
+                protectedSize--;
+            }
+        }
+    }
+
+    /**
+     * Removes every record from the cache; the request counts and the hit and miss counters are kept
+     */
+    public void clear() {
+        entries.clear();
+        for (Entry list : new Entry[] { window, probation, protectedSegment }) {
+            list.next = list;
+            list.previous = list;
+        }
+        windowSize = 0;
+        probationSize = 0;
+        protectedSize = 0;
+    }
+
+    /**
+     * Returns the number of records currently cached
+     *
+     * @return the number of cached records
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that were not answered from the cache
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of lookups answered from the cache, or 0 if there were none
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Moves an entry hit in probation to the protected segment, demoting the least recently used protected entry
+     */
+    private void promote(Entry e) {
+        e.segment = PROTECTED;
+        append(protectedSegment, e);
+        if (++protectedSize > protectedCapacity) {
+            Entry demoted = protectedSegment.next;
+            unlink(demoted);
+            protectedSize--;
+            demoted.segment = PROBATION;
+            append(probation, demoted);
+            probationSize++;
+        }
+    }
+
+    /**
+     * Admits an entry evicted from the window to the main area if there is room, or if it is requested more often
+     * than the least recently used entry on probation, which it then replaces
+     */
+    private void admit(Entry candidate) {
+        if (probationSize + protectedSize >= mainCapacity) {
+            Entry victim = probation.next;
+            if (victim == probation || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                entries.remove(candidate.key); // Rejected
+                return;
+            }
+            unlink(victim);
+            probationSize--;
+            entries.remove(victim.key);
+        }
+        candidate.segment = PROBATION;
+        append(probation, candidate);
+        probationSize++;
+    }
+
+    private Entry segmentList(byte segment) {
+        return segment == WINDOW ? window : segment == PROBATION ? probation : protectedSegment;
+    }
+
+    /**
+     * Links e at the most recently used end of the given list
+     */
+    private static void append(Entry list, Entry e) {
+        e.previous = list.previous;
+        e.next = list;
+        list.previous.next = e;
+        list.previous = e;
+    }
+
+    private static void unlink(Entry e) {
+        e.previous.next = e.next;
+        e.next.previous = e.previous;
+    }
+
+    /**
+     * Cached record, linked into the LRU list of its segment; the head of each list is an entry without a key
+     */
+    private static final class Entry {
+        final Key key;
+        final Record record;
+        byte segment;
+        Entry previous = this;
+        Entry next = this;
+
+        Entry(Key key, Record record) {
+            this.key = key;
+            this.record = record;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, four per key, estimating how often each key was requested recently
+     * After as many increments as ten times the cache capacity every counter is halved.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+        private static final long RESET_MASK = 0x7777777777777777L; // Clears the top bit of every counter after a shift
+        private static final int MAX_COUNT = 15;
+
+        private final long[] table; // Sixteen 4-bit counters per long
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int longs = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1; // Power of two >= capacity
+            this.table = new long[Math.max(8, longs)];
+            this.mask = table.length - 1;
+            this.sampleSize = 10 * Math.max(1, capacity);
+        }
+
+        void increment(Key k) {
+            int hash = spread(k.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                added |= incrementAt(indexOf(hash, i), offsetOf(hash, i));
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(Key k) {
+            int hash = spread(k.hashCode());
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int count = (int) ((table[indexOf(hash, i)] >>> offsetOf(hash, i)) & 0xF);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        private boolean incrementAt(int index, int offset) {
+            long counter = (table[index] >>> offset) & 0xF;
+            if (counter == MAX_COUNT) {
+                return false;
+            }
+            table[index] += 1L << offset;
+            return true;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            return (int) (h >>> 32) & mask;
+        }
+
+        private int offsetOf(int hash, int i) {
+            return (((hash >>> (i << 3)) & 3) << 2) + (i << 4); // One of four counters in the i-th quarter of the long
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class measures what the RecordCache in front of BSTDictionary.get is worth on workloads of different skew.
+ * It builds two dictionaries with the same records, one without a cache and one with a cache of the given size,
+ * and times the same sequence of lookups on both: keys drawn from a Zipf distribution over the records for a
+ * range of exponents (0 is uniform; around 1 is typical of word frequencies in text), and lookups of keys that
+ * are not in the dictionary at all. Hot keys are spread over the tree at random rather than clustered by key.
+ * Lookups are timed in batches of BATCH, since a single lookup is close to the resolution of the timer, and the
+ * median (p50) and 99th percentile (p99) of the time per lookup in a batch are reported, over all the batches of
+ * every repetition, after a warm-up on the same lookups.
+ *
+ * Usage: java RecordCacheBenchmark [inputFile] [cacheSize]
+ * Without an input file, 200000 generated records are used.
+ *
+ * @author Ivory Huo
+ */
+
+public class RecordCacheBenchmark {
+
+    private static final int GENERATED_RECORDS = 200000;
+    private static final int LOOKUPS = 500000;
+    private static final int REPETITIONS = 3;
+    private static final int BATCH = 16;
+    private static final double[] EXPONENTS = {0, 0.6, 0.8, 1.0, 1.2};
+
+    public static void main(String[] args) throws IOException {
+        Record[] records = args.length > 0 && !args[0].isEmpty()
+                ? new DictionaryLoader(ForkJoinPool.commonPool(), true).read(Paths.get(args[0]))
+                : generate(GENERATED_RECORDS);
+        int cacheSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+        BSTDictionary plain = new BSTDictionary(true);
+        BSTDictionary cached = new BSTDictionary(true, cacheSize);
+        plain.load(records);
+        cached.load(records);
+        System.out.printf("%d records, cache of %d, %d lookups per run%n", records.length, cacheSize, LOOKUPS);
+        System.out.printf("%-12s %22s %22s %10s%n", "", "p50 ns per lookup", "p99 ns per lookup", "");
+        System.out.printf("%-12s %11s %10s %11s %10s %10s%n", "workload", "no cache", "cache", "no cache", "cache", "hit rate");
+
+        Random random = new Random(42);
+        Key[] keys = shuffledKeys(records, random);
+        for (double s : EXPONENTS) {
+            compare(s == 0 ? "uniform" : "zipf " + s, zipf(keys, s, random), plain, cached);
+        }
+        Key[] missing = new Key[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            Key k = keys[random.nextInt(keys.length)];
+            missing[i] = new Key(k.getLabel() + "~", k.getType()); // Sorts next to a present key, but is absent
+        }
+        compare("misses", missing, plain, cached);
+    }
+
+    /**
+     * Times the lookups on both dictionaries and prints one line
+     */
+    private static void compare(String workload, Key[] lookups, BSTDictionary plain, BSTDictionary cached) {
+        int batches = lookups.length / BATCH;
+        time(plain, lookups, new long[batches], 0);
+        time(cached, lookups, new long[batches], 0); // Warm up both, and fill the cache
+        long hits = cached.getCache().getHitCount();
+        long misses = cached.getCache().getMissCount();
+        long[] without = new long[REPETITIONS * batches];
+        long[] with = new long[REPETITIONS * batches];
+        for (int r = 0; r < REPETITIONS; r++) {
+            time(plain, lookups, without, r * batches);
+            time(cached, lookups, with, r * batches);
+        }
+        hits = cached.getCache().getHitCount() - hits;
+        misses = cached.getCache().getMissCount() - misses;
+        Arrays.sort(without);
+        Arrays.sort(with);
+        System.out.printf("%-12s %11.1f %10.1f %11.1f %10.1f %9.1f%%%n", workload,
+                percentile(without, 0.50), percentile(with, 0.50), percentile(without, 0.99), percentile(with, 0.99),
+                100.0 * hits / (hits + misses));
+    }
+
+    /**
+     * Times the lookups in batches of BATCH and stores the time of each batch in nanoseconds, from times[offset]
+     */
+    private static void time(BSTDictionary dictionary, Key[] lookups, long[] times, int offset) {
+        long found = 0;
+        for (int b = 0; b < lookups.length / BATCH; b++) {
+            long start = System.nanoTime();
+            for (int i = b * BATCH; i < (b + 1) * BATCH; i++) {
+                if (dictionary.get(lookups[i]) != null) {
+                    found++;
+                }
+            }
+            times[offset + b] = System.nanoTime() - start;
+        }
+        if (found < 0) {
+            System.out.println(found); // Keeps the lookups from being optimized away
+        }
+    }
+
+    /**
+     * Returns the time per lookup, in nanoseconds, of the batch at the given fraction of the sorted batch times
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        return (double) sorted[(int) Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)))] / BATCH;
+    }
+
+    /**
+     * Returns lookups drawn from the keys with a Zipf distribution: the key of rank i (from 1) has weight 1/i^s
+     */
+    private static Key[] zipf(Key[] keys, double s, Random random) {
+        double[] cumulative = new double[keys.length];
+        double total = 0;
+        for (int i = 0; i < keys.length; i++) {
+            total += 1 / Math.pow(i + 1, s);
+            cumulative[i] = total;
+        }
+        Key[] lookups = new Key[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            lookups[i] = keys[rank >= 0 ? rank : Math.min(-rank - 1, keys.length - 1)];
+        }
+        return lookups;
+    }
+
+    /**
+     * Returns the keys of the records in random order, which becomes their popularity rank
+     */
+    private static Key[] shuffledKeys(Record[] records, Random random) {
+        Key[] keys = new Key[records.length];
+        for (int i = 0; i < records.length; i++) {
+            keys[i] = records[i].getKey();
+        }
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Key swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return keys;
+    }
+
+    private static Record[] generate(int n) {
+        List<Record> records = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            records.add(new Record(new Key("word" + i, 1 + i % 2), "data " + i));
+        }
+        return records.toArray(new Record[0]);
+    }
+}
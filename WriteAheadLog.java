@@ -0,0 +1,430 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * This class implements an append-only write-ahead log of the put and remove operations applied to a dictionary.
+ * Entries are appended to a buffer and forced to disk in groups: when groupSize entries are pending, or at the
+ * latest maxDelayMillis after an entry was appended. A crash loses the entries of the last group that was not forced
+ * yet, so logPut and logRemove return the sequence number of their entry, and a caller must pass it to awaitDurable
+ * before it acknowledges the change. A caller that acknowledges a batch of changes waits once, for the last of them.
+ * The change is made in the dictionary before it is logged, so other readers may see it before it is durable.
+ * Every checkpointInterval entries the whole dictionary is written to a snapshot and the log is truncated. The
+ * snapshot is written by the writer whose entry reaches the interval, under the log's lock, so that writer, every
+ * other writer and the background flusher wait for it: a pause that grows with the size of the dictionary, once
+ * per interval. If the snapshot cannot be written, the log is left as it was, the failure is kept for
+ * takeCheckpointFailure, and the checkpoint is tried again an interval later.
+ * On startup, recover loads the last checkpoint and replays the log on top of it.
+ *
+ * The first write, force or truncation of the log that fails makes the log unusable until it is reopened: the file is cut back
+ * to the end of the last entry forced to disk, the buffered entries are dropped, and every later logPut, logRemove
+ * and awaitDurable throws. An entry whose logPut or logRemove throws, or whose awaitDurable throws, therefore never
+ * reaches the disk, and a caller may undo its change in the dictionary; nothing written after it can bring it back.
+ *
+ * Replaying is idempotent: a put whose key is already present and a remove whose key is missing are skipped,
+ * so entries that were already included in the checkpoint (after a crash between checkpoint and truncation)
+ * leave the dictionary in the same state.
+ *
+ * @author Ivory Huo
+ */
+
+public class WriteAheadLog implements Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private static final String LOG_FILE = "wal.log";
+    private static final String CHECKPOINT_FILE = "checkpoint.snap";
+
+    private BSTDictionaryADT dictionary;
+    private Path checkpointFile;
+    private FileChannel channel;
+    private OutputStream out;
+    private int groupSize;
+    private int checkpointInterval;
+    private int pending; // Entries appended but not yet forced to disk
+    private int sinceCheckpoint; // Entries appended since the last checkpoint
+    private int checkpointAt; // Value of sinceCheckpoint at which the next checkpoint is taken
+    private IOException checkpointFailure; // Why the last periodic checkpoint failed, if it did and was not taken yet
+    private long appended; // Sequence number of the last entry appended
+    private long durable; // Sequence number of the last entry forced to disk
+    private long durableSize; // Length of the log file up to the end of the last entry forced to disk
+    private IOException failure; // Why the log stopped accepting entries, or null if it has not failed
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Opens (or creates) the log kept in the given directory for the given dictionary
+     *
+     * @param dictionary: the dictionary whose changes are logged
+     * @param directory: directory holding the log and checkpoint files; created if needed
+     * @param groupSize: number of entries forced to disk together
+     * @param maxDelayMillis: longest time an entry may wait before it is forced to disk
+     * @param checkpointInterval: number of entries after which a checkpoint is taken
+     * @throws IOException if the log cannot be opened
+     */
+    public WriteAheadLog(BSTDictionaryADT dictionary, Path directory, int groupSize, long maxDelayMillis,
+            int checkpointInterval) throws IOException {
+        Files.createDirectories(directory);
+        this.dictionary = dictionary;
+        this.checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        this.channel = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.groupSize = groupSize;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointAt = checkpointInterval;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wal-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::syncQuietly, maxDelayMillis, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns true if a checkpoint has been written; if so, recover replaces the dictionary contents with it
+     *
+     * @return true if a checkpoint file exists
+     */
+    public boolean hasCheckpoint() {
+        return Files.exists(checkpointFile);
+    }
+
+    /**
+     * Restores the dictionary from the last checkpoint, if there is one, and replays the log on top of it
+     * If there is a checkpoint, the dictionary must be empty, since the checkpoint holds its whole contents;
+     * otherwise the log is replayed on top of what the dictionary already holds (the records of the input file).
+     * A torn entry at the end of the log (from a crash in the middle of a write) is discarded.
+     *
+     * @throws IOException if the checkpoint or the log cannot be read
+     * @throws IllegalStateException if there is a checkpoint and the dictionary is not empty
+     */
+    public synchronized void recover() throws IOException {
+        if (hasCheckpoint()) {
+            if (dictionary.smallest() != null) {
+                throw new IllegalStateException("Recovering from a checkpoint into a dictionary that is not empty");
+            }
+            dictionary.load(DictionarySnapshot.read(checkpointFile));
+        }
+
+        ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        int valid = 0;
+        try {
+            while (log.remaining() >= 8) {
+                int length = log.getInt();
+                int crc = log.getInt();
+                if (length < 0 || length > log.remaining()) {
+                    break;
+                }
+                ByteBuffer entry = log.slice(log.position(), length);
+                CRC32 checksum = new CRC32();
+                checksum.update(entry.duplicate());
+                if ((int) checksum.getValue() != crc) {
+                    break;
+                }
+                byte op = entry.get();
+                if (op != PUT && op != REMOVE) {
+                    break; // Unknown operation: stop replaying here, as for a bad checksum
+                }
+                Key key = Key.fromLowerCase(readString(entry), entry.getInt());
+                apply(op, key, op == PUT ? readString(entry) : null);
+                log.position(log.position() + length);
+                valid = log.position();
+                sinceCheckpoint++;
+            }
+        } catch (BufferUnderflowException e) {
+            // Malformed entry: treat it as the end of the log
+        }
+
+        channel.truncate(valid);
+        channel.position(valid);
+        durableSize = valid;
+        out = new BufferedOutputStream(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Appends a put entry for a record that was just inserted into the dictionary
+     *
+     * @param d: the inserted record
+     * @return the sequence number of the entry, to pass to awaitDurable
+     * @throws IOException if the entry cannot be written or the log has failed; the entry is then never written
+     */
+    public synchronized long logPut(Record d) throws IOException {
+        return append(PUT, d.getKey(), d.getDataItem());
+    }
+
+    /**
+     * Appends a remove entry for a key that was just removed from the dictionary
+     *
+     * @param k: the removed key
+     * @return the sequence number of the entry, to pass to awaitDurable
+     * @throws IOException if the entry cannot be written or the log has failed; the entry is then never written
+     */
+    public synchronized long logRemove(Key k) throws IOException {
+        return append(REMOVE, k, null);
+    }
+
+    /**
+     * Waits until the entry with the given sequence number, and every entry before it, is forced to disk by a full
+     * group or by the background flusher, so at most maxDelayMillis
+     *
+     * @param sequence: sequence number returned by logPut or logRemove
+     * @throws IOException if the log failed before the entry was forced (the entry is then never written), is closed
+     *         first, or the wait is interrupted
+     */
+    public synchronized void awaitDurable(long sequence) throws IOException {
+        while (durable < sequence) {
+            checkFailure();
+            if (!channel.isOpen()) {
+                throw new IOException("Write-ahead log closed");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the write-ahead log");
+            }
+        }
+    }
+
+    /**
+     * Forces every appended entry to disk
+     *
+     * @throws IOException if the log cannot be written or has failed
+     */
+    public synchronized void sync() throws IOException {
+        checkFailure();
+        if (pending > 0) {
+            try {
+                out.flush();
+                channel.force(false);
+            } catch (IOException e) {
+                throw fail(e);
+            }
+            pending = 0;
+            durableSize = channel.position();
+        }
+        durable = appended;
+        notifyAll();
+    }
+
+    /**
+     * Writes the whole dictionary to the checkpoint file and empties the log
+     *
+     * If only the snapshot cannot be written, the log is left as it was and can still be used.
+     *
+     * @throws IOException if the checkpoint or the log cannot be written, or the log has failed
+     */
+    public synchronized void checkpoint() throws IOException {
+        checkpoint(dictionary);
+    }
+
+    /**
+     * Writes the given records to the checkpoint file in place of the dictionary and empties the log, for a caller
+     * that is about to replace the contents of the dictionary with them; until it does, no change may be logged
+     * If only the snapshot cannot be written, the log is left as it was and can still be used.
+     *
+     * @param contents: the records the dictionary is about to hold, in key order
+     * @throws IOException if the checkpoint or the log cannot be written, or the log has failed
+     */
+    public synchronized void checkpoint(Iterable<Record> contents) throws IOException {
+        sync();
+        DictionarySnapshot.save(contents, checkpointFile);
+        try {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+        } catch (IOException e) {
+            throw fail(e);
+        }
+        durableSize = 0;
+        sinceCheckpoint = 0;
+        checkpointAt = checkpointInterval;
+    }
+
+    /**
+     * Returns why the last periodic checkpoint could not write its snapshot, and forgets it
+     * The log is still usable then; the checkpoint is tried again an interval later.
+     *
+     * @return the failure, or null if no periodic checkpoint failed since the last call
+     */
+    public synchronized IOException takeCheckpointFailure() {
+        IOException e = checkpointFailure;
+        checkpointFailure = null;
+        return e;
+    }
+
+    /**
+     * Returns true if a write, force or truncation of the log failed, so that no more entries are written
+     *
+     * @return true if the entries after getDurable are never written
+     */
+    public synchronized boolean hasFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Returns the sequence number of the last entry forced to disk
+     *
+     * @return the sequence number, or 0 if no entry was forced since the log was opened
+     */
+    public synchronized long getDurable() {
+        return durable;
+    }
+
+    /**
+     * Forces the pending entries to disk and closes the log
+     *
+     * @throws IOException if the log cannot be written or has failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdownNow();
+        try {
+            if (out != null) {
+                sync();
+            }
+        } finally {
+            channel.close();
+            notifyAll(); // Waiters for entries that were never appended give up
+        }
+    }
+
+    /**
+     * Appends one entry: its length, the CRC-32 of its payload, and the payload
+     * A checkpoint that fails after the entry is forced does not fail this entry, which is on disk.
+     */
+    private long append(byte op, Key k, String data) throws IOException {
+        if (out == null) {
+            throw new IOException("Write-ahead log used before recover");
+        }
+        checkFailure();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(op);
+        writeString(payload, k.getLabel());
+        payload.writeInt(k.getType());
+        if (op == PUT) {
+            writeString(payload, data);
+        }
+        byte[] entry = bytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(entry);
+        ByteBuffer framed = ByteBuffer.allocate(8 + entry.length);
+        framed.putInt(entry.length).putInt((int) checksum.getValue()).put(entry);
+
+        try {
+            out.write(framed.array());
+        } catch (IOException e) {
+            throw fail(e);
+        }
+        pending++;
+        sinceCheckpoint++;
+        long sequence = ++appended;
+        if (sinceCheckpoint >= checkpointAt) {
+            sync();
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                if (failure == null) { // Only the snapshot failed; the log is intact and keeps growing
+                    checkpointFailure = e;
+                    checkpointAt = sinceCheckpoint + checkpointInterval;
+                }
+            }
+        } else if (pending >= groupSize) {
+            sync();
+        }
+        return sequence;
+    }
+
+    /**
+     * Throws if the log has failed or is closed
+     */
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log failed: " + failure.getMessage(), failure);
+        }
+        if (!channel.isOpen()) {
+            throw new IOException("Write-ahead log closed");
+        }
+    }
+
+    /**
+     * Makes the log fail: drops the buffered entries, cuts the file back to the entries forced to disk, so that
+     * no entry that was not acknowledged is ever written, and wakes up the waiters so they throw
+     *
+     * @param e: the error that made the log fail
+     * @return e, for the caller to throw
+     */
+    private IOException fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            out = OutputStream.nullOutputStream(); // The buffer may still hold entries, or part of one
+            try {
+                channel.truncate(durableSize);
+                channel.force(false);
+            } catch (IOException ignored) {
+                // Nothing more can be done; the log is not written again
+            }
+            notifyAll();
+        }
+        return e;
+    }
+
+    /**
+     * Applies one replayed entry to the dictionary, skipping it if it is already reflected there
+     */
+    private void apply(byte op, Key k, String data) {
+        if (op == PUT) {
+            dictionary.putIfAbsent(new Record(k, data));
+        } else if (op == REMOVE) {
+            dictionary.tryRemove(k);
+        }
+    }
+
+    /**
+     * Forces pending entries to disk from the background flusher
+     */
+    private synchronized void syncQuietly() {
+        try {
+            if (out != null && failure == null && channel.isOpen()) {
+                sync();
+            }
+        } catch (IOException e) {
+            // The log has failed; waiters and the next logPut or logRemove report it
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString
+     */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}